@@ -0,0 +1,78 @@
+package net.azisaba.velocityredisbridge;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.messages.LegacyChannelIdentifier;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.memory.InMemoryBackend;
+import net.azisaba.velocityredisbridge.memory.InMemoryNetwork;
+import net.azisaba.velocityredisbridge.redis.MessagePublisher;
+import net.azisaba.velocityredisbridge.redis.PlayerCommandRouter;
+import net.azisaba.velocityredisbridge.redis.PlayerInfoHandler;
+import net.azisaba.velocityredisbridge.redis.PluginMessageForwarder;
+import net.azisaba.velocityredisbridge.util.KeyedOrderedExecutor;
+
+/**
+ * Builds a plugin instance wired like {@code onProxyInitialization} does, with redis replaced by
+ * an in-memory backend and a publisher that acknowledges every message immediately, so that the
+ * benchmarks pay for the encoding but not for the network.
+ */
+public final class BenchmarkBridge {
+
+  public static final String PROXY_ID = "benchmark";
+
+  private BenchmarkBridge() {}
+
+  public static VelocityRedisBridge create(ProxyServer proxy) {
+    VelocityRedisBridge plugin =
+        new VelocityRedisBridge(proxy, Logger.getLogger("VelocityRedisBridge"));
+    InMemoryBackend backend =
+        new InMemoryBackend(plugin, new InMemoryNetwork(), PlayerInfoCodecs.BINARY, 30);
+    MessagePublisher publisher = (channel, message) -> CompletableFuture.completedFuture(1L);
+    PlayerInfoHandler playerInfoHandler =
+        new PlayerInfoHandler(
+            plugin,
+            publisher,
+            backend.createPlayerInfoStorage(PROXY_ID),
+            PlayerInfoCodecs.BINARY,
+            PROXY_ID);
+
+    set(plugin, "backend", backend);
+    set(plugin, "proxyId", PROXY_ID);
+    set(plugin, "messagePublisher", publisher);
+    set(plugin, "playerInfoHandler", playerInfoHandler);
+    set(
+        plugin,
+        "playerCommandRouter",
+        new PlayerCommandRouter(
+            playerInfoHandler, publisher, plugin.getPeerCapabilities(), PROXY_ID));
+    KeyedOrderedExecutor ioExecutor =
+        new KeyedOrderedExecutor("VelocityRedisBridge I/O", 2, 1_000_000);
+    set(plugin, "ioExecutor", ioExecutor);
+    set(
+        plugin,
+        "pluginMessageForwarder",
+        new PluginMessageForwarder(
+            plugin,
+            publisher,
+            ioExecutor,
+            PROXY_ID,
+            new LegacyChannelIdentifier("BungeeCord"),
+            MinecraftChannelIdentifier.create("bungeecord", "main")));
+    set(null, "api", new VelocityRedisBridgeAPI(plugin, publisher, null, ioExecutor));
+    return plugin;
+  }
+
+  private static void set(VelocityRedisBridge plugin, String name, Object value) {
+    try {
+      Field field = VelocityRedisBridge.class.getDeclaredField(name);
+      field.setAccessible(true);
+      field.set(plugin, value);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Failed to set " + name, e);
+    }
+  }
+}
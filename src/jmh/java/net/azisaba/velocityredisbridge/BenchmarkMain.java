@@ -0,0 +1,26 @@
+package net.azisaba.velocityredisbridge;
+
+import java.util.Arrays;
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the benchmarks like the JMH launcher does, leaving out the ones that need a real redis
+ * server unless an argument names them, so that the default run works offline.
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {}
+
+  public static void main(String[] args) throws Exception {
+    boolean selected =
+        Arrays.stream(args)
+            .anyMatch(arg -> Arrays.stream(BenchmarkRedis.BENCHMARKS).anyMatch(arg::contains));
+    if (!selected) {
+      String[] withExclude = Arrays.copyOf(args, args.length + 2);
+      withExclude[args.length] = "-e";
+      withExclude[args.length + 1] = String.join("|", BenchmarkRedis.BENCHMARKS);
+      args = withExclude;
+    }
+    Main.main(args);
+  }
+}
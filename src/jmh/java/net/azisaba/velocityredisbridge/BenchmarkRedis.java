@@ -0,0 +1,50 @@
+package net.azisaba.velocityredisbridge;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
+
+/**
+ * Connects the benchmarks that need a real redis server. {@link BenchmarkMain} leaves them out
+ * unless they are selected by name, and they refuse to run unless the server is given explicitly:
+ *
+ * <pre>
+ * java -Dredis.host=localhost -jar target/VelocityRedisBridge-benchmarks.jar StorageLayoutBenchmark
+ * </pre>
+ *
+ * <p>{@code -Dredis.port} defaults to 6379, {@code -Dredis.password} to none and {@code
+ * -Dredis.database} to 15. The proxies always use database 0, which is refused, since the
+ * benchmarks delete every key of the bridge in their database.
+ */
+public final class BenchmarkRedis {
+
+  /** The simple names of the benchmarks that need a real redis server. */
+  static final String[] BENCHMARKS = {"StorageLayoutBenchmark", "TransportBenchmark"};
+
+  private BenchmarkRedis() {}
+
+  /**
+   * Creates a pool connected to the database given with the system properties.
+   *
+   * @return Returns the pool
+   * @throws IllegalStateException if no server or the database of the proxies is given
+   */
+  public static JedisPool connect() {
+    String host = System.getProperty("redis.host");
+    if (host == null) {
+      throw new IllegalStateException(
+          "This benchmark deletes keys on a real redis server, set -Dredis.host to run it");
+    }
+    int database = Integer.getInteger("redis.database", 15);
+    if (database == 0) {
+      throw new IllegalStateException("Database 0 is used by the proxies, set -Dredis.database");
+    }
+    return new JedisPool(
+        new JedisPoolConfig(),
+        host,
+        Integer.getInteger("redis.port", 6379),
+        Protocol.DEFAULT_TIMEOUT,
+        System.getProperty("redis.password"),
+        database);
+  }
+}
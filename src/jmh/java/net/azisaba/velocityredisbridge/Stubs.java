@@ -0,0 +1,64 @@
+package net.azisaba.velocityredisbridge;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Creates implementations of Velocity interfaces that only answer the methods a benchmark uses.
+ * Every other method returns an empty value.
+ */
+public final class Stubs {
+
+  private Stubs() {}
+
+  /**
+   * Creates a stub of the specified interface.
+   *
+   * @param type    the interface
+   * @param answers the answers by method name, receiving the arguments of the call
+   * @param <T>     the type of the interface
+   * @return Returns the stub
+   */
+  public static <T> T of(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+    Object stub =
+        Proxy.newProxyInstance(
+            type.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> {
+              Function<Object[], Object> answer = answers.get(method.getName());
+              if (answer != null) {
+                return answer.apply(args);
+              }
+              switch (method.getName()) {
+                case "equals":
+                  return proxy == args[0];
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "toString":
+                  return type.getSimpleName() + " stub";
+                default:
+                  return emptyValue(method.getReturnType());
+              }
+            });
+    return type.cast(stub);
+  }
+
+  private static Object emptyValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class || type == short.class || type == byte.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == Optional.class) {
+      return Optional.empty();
+    } else if (Collection.class.isAssignableFrom(type)) {
+      return Collections.emptyList();
+    }
+    return null;
+  }
+}
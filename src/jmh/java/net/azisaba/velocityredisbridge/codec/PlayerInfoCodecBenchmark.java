@@ -0,0 +1,111 @@
+package net.azisaba.velocityredisbridge.codec;
+
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import net.azisaba.velocityredisbridge.util.PubSubMessageData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Encoding and decoding of player records, update notifications and pub/sub envelopes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerInfoCodecBenchmark {
+
+  private final Gson gson = new Gson();
+
+  private PlayerInfo info;
+  private PlayerInfoNotification notification;
+  private byte[] binaryRecord;
+  private byte[] jsonRecord;
+  private byte[] binaryNotification;
+  private byte[] jsonNotification;
+
+  private PubSubMessageData pubSubMessage;
+  private String pubSubJson;
+
+  @Setup
+  public void setUp() {
+    info =
+        new PlayerInfo(
+            new UUID(0x0123456789abcdefL, 0xfedcba9876543210L),
+            "Benchmark_Player",
+            "203.0.113.42",
+            54321,
+            "proxy-01",
+            "lobby-1");
+    notification = new PlayerInfoNotification("proxy-01", 123456, info);
+
+    binaryRecord = PlayerInfoCodecs.BINARY.encode(info);
+    jsonRecord = PlayerInfoCodecs.JSON.encode(info);
+    binaryNotification = PlayerInfoCodecs.BINARY.encodeNotification(notification);
+    jsonNotification = PlayerInfoCodecs.JSON.encodeNotification(notification);
+
+    pubSubMessage = new PubSubMessageData("benchmark:key", "some payload", "proxy-01");
+    pubSubJson = gson.toJson(pubSubMessage);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() {
+    return PlayerInfoCodecs.BINARY.encode(info);
+  }
+
+  @Benchmark
+  public byte[] encodeJson() {
+    return PlayerInfoCodecs.JSON.encode(info);
+  }
+
+  @Benchmark
+  public PlayerInfo decodeBinary() {
+    return PlayerInfoCodecs.decode(binaryRecord);
+  }
+
+  @Benchmark
+  public PlayerInfo decodeJson() {
+    return PlayerInfoCodecs.decode(jsonRecord);
+  }
+
+  @Benchmark
+  public byte[] encodeBinaryNotification() {
+    return PlayerInfoCodecs.BINARY.encodeNotification(notification);
+  }
+
+  @Benchmark
+  public byte[] encodeJsonNotification() {
+    return PlayerInfoCodecs.JSON.encodeNotification(notification);
+  }
+
+  @Benchmark
+  public PlayerInfoNotification decodeBinaryNotification() {
+    return PlayerInfoCodecs.decodeNotification(binaryNotification);
+  }
+
+  @Benchmark
+  public PlayerInfoNotification decodeJsonNotification() {
+    return PlayerInfoCodecs.decodeNotification(jsonNotification);
+  }
+
+  @Benchmark
+  public byte[] serializePubSubMessage() {
+    return gson.toJson(pubSubMessage).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public PubSubMessageData deserializePubSubMessage() {
+    return gson.fromJson(pubSubJson, PubSubMessageData.class);
+  }
+}
@@ -0,0 +1,129 @@
+package net.azisaba.velocityredisbridge.listener;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.event.connection.PluginMessageEvent.ForwardResult;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.LegacyChannelIdentifier;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import net.azisaba.velocityredisbridge.BenchmarkBridge;
+import net.azisaba.velocityredisbridge.Stubs;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Relaying Forward requests to every child server. {@code forwardedBytes} reports the bytes handed
+ * to the servers per second, counting the shared message once per server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForwardBenchmark {
+
+  private static final LegacyChannelIdentifier LEGACY_CHANNEL =
+      new LegacyChannelIdentifier("BungeeCord");
+
+  @Param({"64", "1024", "16384"})
+  private int messageSize;
+
+  @Param({"ALL", "server-1"})
+  private String target;
+
+  @Param({"10"})
+  private int servers;
+
+  private BungeeCordPluginMessageReceiveListener listener;
+  private ServerConnection connection;
+  private Player player;
+  private byte[] data;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Counters {
+
+    public long forwardedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      forwardedBytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    Map<String, RegisteredServer> registered = new HashMap<>();
+    for (int i = 0; i < servers; i++) {
+      ServerInfo info =
+          new ServerInfo("server-" + i, InetSocketAddress.createUnresolved("10.0.0." + i, 25565));
+      registered.put(info.getName(), server(info));
+    }
+    List<RegisteredServer> allServers = new ArrayList<>(registered.values());
+
+    Map<String, Function<Object[], Object>> proxyAnswers = new HashMap<>();
+    proxyAnswers.put("getAllServers", args -> allServers);
+    proxyAnswers.put("getServer", args -> Optional.ofNullable(registered.get((String) args[0])));
+    ProxyServer proxy = Stubs.of(ProxyServer.class, proxyAnswers);
+
+    Map<String, Function<Object[], Object>> connectionAnswers = new HashMap<>();
+    connectionAnswers.put("getPlayer", args -> player);
+    connectionAnswers.put("sendPluginMessage", args -> true);
+    connection = Stubs.of(ServerConnection.class, connectionAnswers);
+    player = Stubs.of(Player.class, new HashMap<>());
+
+    listener =
+        new BungeeCordPluginMessageReceiveListener(
+            BenchmarkBridge.create(proxy),
+            LEGACY_CHANNEL,
+            MinecraftChannelIdentifier.create("bungeecord", "main"));
+
+    ByteArrayDataOutput out = ByteStreams.newDataOutput();
+    out.writeUTF("Forward");
+    out.writeUTF(target);
+    out.writeUTF("BenchmarkChannel");
+    out.writeShort(messageSize);
+    out.write(new byte[messageSize]);
+    data = out.toByteArray();
+  }
+
+  @Benchmark
+  public ForwardResult forward(Counters counters) {
+    PluginMessageEvent event = new PluginMessageEvent(connection, player, LEGACY_CHANNEL, data);
+    listener.onPluginMessageReceive(event);
+    counters.forwardedBytes += (long) messageSize * (target.equals("ALL") ? servers : 1);
+    return event.getResult();
+  }
+
+  private static RegisteredServer server(ServerInfo info) {
+    Map<String, Function<Object[], Object>> answers = new HashMap<>();
+    answers.put("getServerInfo", args -> info);
+    answers.put("sendPluginMessage", args -> true);
+    return Stubs.of(RegisteredServer.class, answers);
+  }
+}
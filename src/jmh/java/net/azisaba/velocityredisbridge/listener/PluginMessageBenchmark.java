@@ -0,0 +1,191 @@
+package net.azisaba.velocityredisbridge.listener;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.event.connection.PluginMessageEvent.ForwardResult;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.LegacyChannelIdentifier;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import net.azisaba.velocityredisbridge.BenchmarkBridge;
+import net.azisaba.velocityredisbridge.Stubs;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.redis.PlayerInfoHandler;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding a BungeeCord plugin message and encoding its response, for each sub channel. Requests
+ * that go to other proxies are measured up to the hand-off to the I/O executor, which publishes
+ * them to a stand-in without a round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginMessageBenchmark {
+
+  private static final LegacyChannelIdentifier LEGACY_CHANNEL =
+      new LegacyChannelIdentifier("BungeeCord");
+  private static final int PLAYERS = 1000;
+  private static final int SERVERS = 10;
+
+  @Param({
+    "IP",
+    "IPOther",
+    "PlayerCount",
+    "PlayerList",
+    "GetServers",
+    "GetServer",
+    "UUID",
+    "UUIDOther",
+    "ServerIP",
+    "Forward",
+    "ForwardToPlayer",
+    "MessageRaw",
+    "KickPlayer",
+    "ConnectOther"
+  })
+  private String subChannel;
+
+  private BungeeCordPluginMessageReceiveListener listener;
+  private ServerConnection connection;
+  private Player player;
+  private byte[] data;
+
+  @Setup
+  public void setUp() {
+    Map<String, RegisteredServer> servers = new HashMap<>();
+    for (int i = 0; i < SERVERS; i++) {
+      ServerInfo info =
+          new ServerInfo("server-" + i, InetSocketAddress.createUnresolved("10.0.0." + i, 25565));
+      servers.put(info.getName(), server(info));
+    }
+    List<RegisteredServer> allServers = new ArrayList<>(servers.values());
+
+    Map<String, Function<Object[], Object>> proxyAnswers = new HashMap<>();
+    proxyAnswers.put("getAllServers", args -> allServers);
+    proxyAnswers.put("getServer", args -> Optional.ofNullable(servers.get((String) args[0])));
+    ProxyServer proxy = Stubs.of(ProxyServer.class, proxyAnswers);
+
+    VelocityRedisBridge plugin = BenchmarkBridge.create(proxy);
+    PlayerInfoHandler handler = plugin.getPlayerInfoHandler();
+    for (int i = 0; i < PLAYERS; i++) {
+      handler.register(
+          new PlayerInfo(
+              new UUID(0, i),
+              "Player" + i,
+              "203.0.113.1",
+              50000 + i,
+              "proxy-" + (i % 4),
+              "server-" + (i % SERVERS)));
+    }
+
+    UUID uuid = new UUID(0, 0);
+    Map<String, Function<Object[], Object>> playerAnswers = new HashMap<>();
+    playerAnswers.put("getUniqueId", args -> uuid);
+    playerAnswers.put("getUsername", args -> "Player0");
+    playerAnswers.put("getCurrentServer", args -> Optional.of(connection));
+    player = Stubs.of(Player.class, playerAnswers);
+
+    RegisteredServer lobby = servers.get("server-0");
+    Map<String, Function<Object[], Object>> connectionAnswers = new HashMap<>();
+    connectionAnswers.put("getPlayer", args -> player);
+    connectionAnswers.put("getServer", args -> lobby);
+    connectionAnswers.put("getServerInfo", args -> lobby.getServerInfo());
+    connectionAnswers.put("sendPluginMessage", args -> true);
+    connection = Stubs.of(ServerConnection.class, connectionAnswers);
+
+    listener =
+        new BungeeCordPluginMessageReceiveListener(
+            plugin, LEGACY_CHANNEL, MinecraftChannelIdentifier.create("bungeecord", "main"));
+    data = request(subChannel);
+  }
+
+  @Benchmark
+  public ForwardResult handle() {
+    PluginMessageEvent event = new PluginMessageEvent(connection, player, LEGACY_CHANNEL, data);
+    listener.onPluginMessageReceive(event);
+    return event.getResult();
+  }
+
+  private static byte[] request(String subChannel) {
+    ByteArrayDataOutput out = ByteStreams.newDataOutput();
+    out.writeUTF(subChannel);
+    switch (subChannel) {
+      case "IPOther":
+      case "UUIDOther":
+        out.writeUTF("Player500");
+        break;
+      case "PlayerCount":
+      case "PlayerList":
+        out.writeUTF("ALL");
+        break;
+      case "ServerIP":
+        out.writeUTF("server-3");
+        break;
+      case "Forward":
+        out.writeUTF("ALL");
+        writeForwarded(out);
+        break;
+      case "ForwardToPlayer":
+        out.writeUTF("Player500");
+        writeForwarded(out);
+        break;
+      case "MessageRaw":
+        out.writeUTF("Player501");
+        out.writeUTF("{\"text\":\"hello\"}");
+        break;
+      case "KickPlayer":
+        out.writeUTF("Player502");
+        out.writeUTF("Kicked");
+        break;
+      case "ConnectOther":
+        out.writeUTF("Player503");
+        out.writeUTF("server-1");
+        break;
+      default:
+        break;
+    }
+    return out.toByteArray();
+  }
+
+  private static void writeForwarded(ByteArrayDataOutput out) {
+    byte[] payload = new byte[256];
+    out.writeUTF("BenchmarkChannel");
+    out.writeShort(payload.length);
+    out.write(payload);
+  }
+
+  private static RegisteredServer server(ServerInfo info) {
+    Map<String, Function<Object[], Object>> answers = new HashMap<>();
+    answers.put("getServerInfo", args -> info);
+    answers.put("sendPluginMessage", args -> true);
+    return Stubs.of(RegisteredServer.class, answers);
+  }
+}
@@ -0,0 +1,129 @@
+package net.azisaba.velocityredisbridge.memory;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Claims, take-overs, releases and purges of players on the in-memory storage, which follows the
+ * ownership rules of the cluster storage. {@code race} logs the same players in on two running
+ * proxies at once; {@code takeOver} moves the players of a stopped proxy.
+ *
+ * <p>Every benchmark throws as soon as a player is owned by two proxies, a player of a stopped
+ * proxy cannot be taken over, or a proxy drops a record it does not own, so a run also checks
+ * those rules under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OwnershipBenchmark {
+
+  private static final int PLAYERS = 1024;
+  private static final String STOPPED = "stopped";
+
+  private InMemoryNetwork network;
+  private String proxyA;
+  private String proxyB;
+  private InMemoryPlayerInfoStorage storageA;
+  private InMemoryPlayerInfoStorage storageB;
+  private InMemoryPlayerInfoStorage stoppedStorage;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int next;
+
+    UUID nextUuid() {
+      next = (next + 1) % PLAYERS;
+      return new UUID(0, next);
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    network = new InMemoryNetwork();
+    InMemoryProxyRegistry registry =
+        new InMemoryProxyRegistry(network, TimeUnit.HOURS.toNanos(1));
+    proxyA = registry.claimProxyId();
+    proxyB = registry.claimProxyId();
+    storageA = new InMemoryPlayerInfoStorage(network, proxyA, PlayerInfoCodecs.BINARY);
+    storageB = new InMemoryPlayerInfoStorage(network, proxyB, PlayerInfoCodecs.BINARY);
+    // never refreshes its liveness
+    stoppedStorage = new InMemoryPlayerInfoStorage(network, STOPPED, PlayerInfoCodecs.BINARY);
+  }
+
+  @Benchmark
+  @Group("race")
+  @GroupThreads(1)
+  public boolean loginOnA(Cursor cursor) {
+    return login(storageA, proxyA, cursor.nextUuid());
+  }
+
+  @Benchmark
+  @Group("race")
+  @GroupThreads(1)
+  public boolean loginOnB(Cursor cursor) {
+    return login(storageB, proxyB, cursor.nextUuid());
+  }
+
+  @Benchmark
+  public void takeOver(Cursor cursor) {
+    UUID uuid = cursor.nextUuid();
+    stoppedStorage.save(player(uuid, STOPPED));
+    if (!storageA.register(player(uuid, proxyA))) {
+      throw new IllegalStateException(uuid + " of a stopped proxy was not taken over");
+    }
+
+    // neither a release nor a purge by a proxy that does not own the player may drop it
+    storageB.delete(uuid);
+    storageB.purgeProxy(STOPPED, Collections.singletonList(uuid));
+    if (!proxyA.equals(ownerOf(uuid))) {
+      throw new IllegalStateException(uuid + " was dropped by a proxy that does not own it");
+    }
+
+    storageA.delete(uuid);
+    if (ownerOf(uuid) != null) {
+      throw new IllegalStateException(uuid + " was not released by its owner");
+    }
+  }
+
+  private boolean login(InMemoryPlayerInfoStorage storage, String proxyId, UUID uuid) {
+    if (!storage.register(player(uuid, proxyId))) {
+      return false;
+    }
+    // the other proxy is running, so nothing may replace the record until it is released
+    String owner = ownerOf(uuid);
+    if (!proxyId.equals(owner)) {
+      throw new IllegalStateException(uuid + " was registered on " + proxyId + " and " + owner);
+    }
+    storage.delete(uuid);
+    return true;
+  }
+
+  private String ownerOf(UUID uuid) {
+    byte[] record = network.records.get(uuid);
+    return record == null ? null : PlayerInfoCodecs.decode(record).getProxyServer();
+  }
+
+  private static PlayerInfo player(UUID uuid, String proxyId) {
+    return new PlayerInfo(
+        uuid, "Player" + uuid.getLeastSignificantBits(), "203.0.113.1", 50000, proxyId, "lobby");
+  }
+}
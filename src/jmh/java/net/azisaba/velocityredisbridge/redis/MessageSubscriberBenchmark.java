@@ -0,0 +1,82 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import net.azisaba.velocityredisbridge.BenchmarkBridge;
+import net.azisaba.velocityredisbridge.Stubs;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handing received messages over to the worker lanes, which is all the receiving thread does per
+ * message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSubscriberBenchmark {
+
+  @Param({"1", "8"})
+  private int channels;
+
+  private DispatchOnlySubscriber subscriber;
+  private String[] channelNames;
+  private final byte[] message = "Player1:lobby-1".getBytes(StandardCharsets.UTF_8);
+  private final LongAdder handled = new LongAdder();
+  private int next;
+
+  @Setup
+  public void setUp() {
+    ProxyServer proxy = Stubs.of(ProxyServer.class, Collections.emptyMap());
+    VelocityRedisBridge plugin = BenchmarkBridge.create(proxy);
+    subscriber = new DispatchOnlySubscriber(plugin);
+
+    channelNames = new String[channels];
+    for (int i = 0; i < channels; i++) {
+      channelNames[i] = RedisKeys.ALL_KEY_PREFIX.getKey() + ":benchmark-" + i;
+      subscriber.registerHandler(channelNames[i], received -> handled.increment());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    subscriber.close();
+  }
+
+  @Benchmark
+  public void dispatch() {
+    next = (next + 1) % channels;
+    subscriber.deliver(channelNames[next], message);
+  }
+
+  private static final class DispatchOnlySubscriber extends MessageSubscriber {
+
+    private DispatchOnlySubscriber(VelocityRedisBridge plugin) {
+      super(plugin, 4, 1_000_000, 1000, 1000);
+    }
+
+    @Override
+    protected void receive() {}
+
+    private void deliver(String channel, byte[] message) {
+      dispatch(channel, message);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import net.azisaba.velocityredisbridge.BenchmarkBridge;
+import net.azisaba.velocityredisbridge.Stubs;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoNotification;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups, name completion and online counts in the player index while other threads update or
+ * reload it, and the cost of applying updates.
+ * Redis is replaced by the in-memory backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerInfoHandlerBenchmark {
+
+  private static final int PLAYERS = 5000;
+  private static final int PROXIES = 4;
+  private static final int CHILD_SERVERS = 10;
+
+  private PlayerInfoHandler handler;
+  private PlayerInfoIndex index;
+  private PlayerInfo[] players;
+  private PlayerInfo[] movedPlayers;
+  private byte[][] notifications;
+
+  @Setup
+  public void setUp() {
+    ProxyServer proxy = Stubs.of(ProxyServer.class, Collections.emptyMap());
+    handler = BenchmarkBridge.create(proxy).getPlayerInfoHandler();
+    index = new PlayerInfoIndex();
+
+    Random random = new Random(42);
+    players = new PlayerInfo[PLAYERS];
+    movedPlayers = new PlayerInfo[PLAYERS];
+    notifications = new byte[PLAYERS][];
+    for (int i = 0; i < PLAYERS; i++) {
+      UUID uuid = new UUID(random.nextLong(), random.nextLong());
+      String proxyId = "proxy-" + (i % PROXIES);
+      players[i] = player(uuid, i, proxyId, "server-" + random.nextInt(CHILD_SERVERS));
+      movedPlayers[i] = player(uuid, i, proxyId, "server-" + random.nextInt(CHILD_SERVERS));
+
+      handler.register(players[i]);
+      index.update(players[i]);
+      // legacy notifications are applied without sequence tracking
+      notifications[i] =
+          PlayerInfoCodecs.BINARY.encodeNotification(
+              new PlayerInfoNotification(null, PlayerInfoNotification.NO_SEQUENCE, players[i]));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int next;
+
+    int next() {
+      next = (next + 1) % PLAYERS;
+      return next;
+    }
+  }
+
+  @Benchmark
+  @Group("lookupUnderUpdates")
+  @GroupThreads(3)
+  public PlayerInfo lookupByName(Cursor cursor) {
+    return handler.get(players[cursor.next()].getUsername());
+  }
+
+  @Benchmark
+  @Group("lookupUnderUpdates")
+  @GroupThreads(1)
+  public void updateWhileLooking(Cursor cursor) {
+    int i = cursor.next();
+    handler.update((i & 1) == 0 ? movedPlayers[i] : players[i]);
+  }
+
+  /** Server list pings while another thread reloads every player, as the periodic fetch does. */
+  @Benchmark
+  @Group("pingUnderFetch")
+  @GroupThreads(3)
+  public int ping() {
+    return handler.getAllPlayersCount();
+  }
+
+  @Benchmark
+  @Group("pingUnderFetch")
+  @GroupThreads(1)
+  public void fetchWhilePinging() {
+    handler.fetch();
+  }
+
+  @Benchmark
+  public PlayerInfo lookupByUuid(Cursor cursor) {
+    return handler.get(players[cursor.next()].getUuid());
+  }
+
+  @Benchmark
+  public int countInChildServer(Cursor cursor) {
+    return handler.getPlayersCount("server-" + (cursor.next() % CHILD_SERVERS));
+  }
+
+  /** Tab completion of a prefix that matches about a fifth of the network. */
+  @Benchmark
+  public List<String> completeName(Cursor cursor) {
+    return handler.completeName("player" + (cursor.next() % 10), 20);
+  }
+
+  /** The same completion done by filtering a copy of every player, as plugins did before. */
+  @Benchmark
+  public List<String> completeNameByCopy(Cursor cursor) {
+    String prefix = "player" + (cursor.next() % 10);
+    return handler.getAllPlayerInfo().values().stream()
+        .map(PlayerInfo::getUsername)
+        .filter(name -> name.toLowerCase(Locale.ROOT).startsWith(prefix))
+        .sorted()
+        .limit(20)
+        .collect(Collectors.toList());
+  }
+
+  /** Moving players between child servers, which touches every secondary map of the index. */
+  @Benchmark
+  public void indexChurn(Cursor cursor) {
+    int i = cursor.next();
+    index.update((i & 1) == 0 ? movedPlayers[i] : players[i]);
+  }
+
+  @Benchmark
+  public void receiveUpdateNotification(Cursor cursor) {
+    handler.receivedUpdateNotify(notifications[cursor.next()]);
+  }
+
+  private static PlayerInfo player(UUID uuid, int i, String proxyId, String childServer) {
+    return new PlayerInfo(
+        uuid, "Player" + i, "203.0.113." + (i % 250), 50000 + i, proxyId, childServer);
+  }
+}
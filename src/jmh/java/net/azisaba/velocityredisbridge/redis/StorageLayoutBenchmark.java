@@ -0,0 +1,154 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import net.azisaba.velocityredisbridge.BenchmarkRedis;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+/**
+ * Full reloads and TTL refreshes of the player records with each storage layout. The memory the
+ * records take in redis is printed once per layout.
+ *
+ * <p>Unlike the other benchmarks this needs a real redis server, see {@link BenchmarkRedis}. Every
+ * key under {@code velocity-redis-bridge:} in the benchmark database is deleted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageLayoutBenchmark {
+
+  private static final int PROXIES = 4;
+  private static final long EXPIRE_SECONDS = 3600;
+
+  @Param({"key", "hash"})
+  private String layout;
+
+  @Param({"5000"})
+  private int players;
+
+  private JedisPool jedisPool;
+  private PlayerInfoStorage reader;
+  private PlayerInfoStorage proxy0;
+  private List<UUID> proxy0Players;
+
+  @Setup
+  public void setUp() {
+    jedisPool = BenchmarkRedis.connect();
+    deleteAll();
+
+    Random random = new Random(42);
+    List<List<PlayerInfo>> perProxy = new ArrayList<>();
+    for (int p = 0; p < PROXIES; p++) {
+      perProxy.add(new ArrayList<>());
+    }
+    for (int i = 0; i < players; i++) {
+      String proxyId = "proxy-" + (i % PROXIES);
+      perProxy
+          .get(i % PROXIES)
+          .add(
+              new PlayerInfo(
+                  new UUID(random.nextLong(), random.nextLong()),
+                  "Player" + i,
+                  "203.0.113." + (i % 250),
+                  50000 + i,
+                  proxyId,
+                  "server-" + random.nextInt(10)));
+    }
+    for (int p = 0; p < PROXIES; p++) {
+      storage("proxy-" + p).registerAll(perProxy.get(p));
+    }
+
+    reader = storage("reader");
+    proxy0 = storage("proxy-0");
+    proxy0Players = new ArrayList<>();
+    for (PlayerInfo info : perProxy.get(0)) {
+      proxy0Players.add(info.getUuid());
+    }
+
+    System.out.println(
+        "\n" + layout + " layout: " + players + " players use " + memoryUsage() + " bytes");
+  }
+
+  @TearDown
+  public void tearDown() {
+    deleteAll();
+    jedisPool.close();
+  }
+
+  /** The periodic fetch of every player in the network. */
+  @Benchmark
+  public int loadAll(Blackhole blackhole) {
+    return reader.loadAll(blackhole::consume);
+  }
+
+  /** The TTL refresh one proxy runs for its own players. */
+  @Benchmark
+  public List<UUID> refreshExpire() {
+    return proxy0.refreshExpire(proxy0Players);
+  }
+
+  private PlayerInfoStorage storage(String proxyId) {
+    Logger logger = Logger.getLogger("StorageLayoutBenchmark");
+    if (layout.equals("hash")) {
+      return new HashPlayerInfoStorage(
+          jedisPool, logger, proxyId, PlayerInfoCodecs.BINARY, EXPIRE_SECONDS);
+    }
+    return new KeyPlayerInfoStorage(jedisPool, logger, PlayerInfoCodecs.BINARY, EXPIRE_SECONDS);
+  }
+
+  private long memoryUsage() {
+    long bytes = 0;
+    try (Jedis jedis = jedisPool.getResource()) {
+      for (String key : keys(jedis)) {
+        Long usage = jedis.memoryUsage(key);
+        bytes += usage == null ? 0 : usage;
+      }
+    }
+    return bytes;
+  }
+
+  private void deleteAll() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      for (String key : keys(jedis)) {
+        jedis.del(key);
+      }
+    }
+  }
+
+  private static List<String> keys(Jedis jedis) {
+    List<String> keys = new ArrayList<>();
+    ScanParams params = new ScanParams().match(RedisKeys.ALL_KEY_PREFIX + ":*").count(1000);
+    String cursor = ScanParams.SCAN_POINTER_START;
+    do {
+      ScanResult<String> result = jedis.scan(cursor, params);
+      cursor = result.getCursor();
+      keys.addAll(result.getResult());
+    } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    return keys;
+  }
+}
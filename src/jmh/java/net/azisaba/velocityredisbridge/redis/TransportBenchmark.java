@@ -0,0 +1,134 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import net.azisaba.velocityredisbridge.BenchmarkBridge;
+import net.azisaba.velocityredisbridge.BenchmarkRedis;
+import net.azisaba.velocityredisbridge.Stubs;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Sustained message rate of the pub/sub and streams transports, publishing from one thread to a
+ * subscriber in the same process. The score is the publish rate; {@code received} reports the
+ * messages per second that reached the handler, which is lower when the subscriber falls behind.
+ *
+ * <p>There is no in-process stand-in for redis pub/sub and streams that would say anything about
+ * their throughput, so like {@link StorageLayoutBenchmark} this needs a real redis server and only
+ * runs when named, see {@link BenchmarkRedis}. The channel is outside of the bridge prefix, so
+ * proxies on the same server do not receive the messages, and the benchmark stream is deleted
+ * before and after every run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+  private static final String CHANNEL = "velocity-redis-bridge-benchmark:transport";
+  private static final long STREAM_MAX_LENGTH = 10000;
+  private static final LongAdder RECEIVED = new LongAdder();
+
+  @Param({"pubsub", "streams"})
+  private String transport;
+
+  @Param({"64", "1024"})
+  private int messageSize;
+
+  private JedisPool jedisPool;
+  private MessagePublisher publisher;
+  private MessageSubscriber subscriber;
+  private byte[] channel;
+  private byte[] message;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Counters {
+
+    public long received;
+    private long start;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      start = RECEIVED.sum();
+      received = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws InterruptedException {
+    jedisPool = BenchmarkRedis.connect();
+    deleteStream();
+
+    VelocityRedisBridge plugin =
+        BenchmarkBridge.create(Stubs.of(ProxyServer.class, Collections.emptyMap()));
+    if (transport.equals("streams")) {
+      publisher =
+          new StreamMessagePublisher(
+              jedisPool, STREAM_MAX_LENGTH, plugin.getMetrics().getPublishLatency());
+      subscriber = new StreamMessageSubscriber(plugin, jedisPool, 4, 1_000_000, 100, 1000, 256);
+    } else {
+      publisher = new DirectMessagePublisher(jedisPool, plugin.getMetrics().getPublishLatency());
+      subscriber = new RedisMessageSubscriber(plugin, jedisPool, 4, 1_000_000, 100, 1000);
+    }
+    subscriber.registerHandler(CHANNEL, received -> RECEIVED.increment());
+    subscriber.subscribe();
+
+    channel = CHANNEL.getBytes(StandardCharsets.UTF_8);
+    message = new byte[messageSize];
+    awaitSubscribed();
+  }
+
+  @TearDown
+  public void tearDown() {
+    subscriber.close();
+    publisher.close();
+    deleteStream();
+    jedisPool.close();
+  }
+
+  @Benchmark
+  public Long publish(Counters counters) {
+    Long receivers = publisher.publish(channel, message).join();
+    counters.received = RECEIVED.sum() - counters.start;
+    return receivers;
+  }
+
+  /** Publishes until a message arrives, since messages sent before subscribing are lost. */
+  private void awaitSubscribed() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (RECEIVED.sum() == 0) {
+      if (System.nanoTime() - deadline > 0) {
+        throw new IllegalStateException("The subscriber did not receive any message");
+      }
+      publisher.publish(channel, message).join();
+      Thread.sleep(10);
+    }
+  }
+
+  private void deleteStream() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.del(StreamMessagePublisher.streamKey(CHANNEL));
+    }
+  }
+}
@@ -8,7 +8,10 @@ import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.messages.LegacyChannelIdentifier;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.scheduler.ScheduledTask;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import lombok.Getter;
@@ -17,14 +20,22 @@ import net.azisaba.velocityredisbridge.config.VelocityRedisBridgeConfig;
 import net.azisaba.velocityredisbridge.listener.BungeeCordPluginMessageReceiveListener;
 import net.azisaba.velocityredisbridge.listener.PlayerJoinQuitListener;
 import net.azisaba.velocityredisbridge.listener.ServerListPingListener;
+import net.azisaba.velocityredisbridge.metrics.BridgeMetrics;
+import net.azisaba.velocityredisbridge.metrics.MetricsReport;
+import net.azisaba.velocityredisbridge.redis.BridgeBackend;
+import net.azisaba.velocityredisbridge.redis.DefaultChannelHandlers;
+import net.azisaba.velocityredisbridge.redis.JedisBackend;
+import net.azisaba.velocityredisbridge.redis.JedisClusterBackend;
+import net.azisaba.velocityredisbridge.redis.MessagePublisher;
+import net.azisaba.velocityredisbridge.redis.MessageSubscriber;
+import net.azisaba.velocityredisbridge.redis.PeerCapabilities;
+import net.azisaba.velocityredisbridge.redis.PlayerCommandRouter;
 import net.azisaba.velocityredisbridge.redis.PlayerInfoHandler;
-import net.azisaba.velocityredisbridge.redis.RedisKeys;
-import net.azisaba.velocityredisbridge.redis.RedisMessageSubscriber;
-import net.azisaba.velocityredisbridge.redis.ServerUniqueIdDefiner;
+import net.azisaba.velocityredisbridge.redis.PluginMessageForwarder;
+import net.azisaba.velocityredisbridge.redis.ProxyHeartbeat;
+import net.azisaba.velocityredisbridge.redis.RegistrationBatcher;
 import net.azisaba.velocityredisbridge.redis.VRBPubSubHandler;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.JedisPoolConfig;
+import net.azisaba.velocityredisbridge.util.KeyedOrderedExecutor;
 
 @Plugin(
     id = "velocity-redis-bridge",
@@ -41,18 +52,30 @@ public class VelocityRedisBridge {
 
   private final ProxyServer proxy;
   private final Logger logger;
+  private final BridgeMetrics metrics = new BridgeMetrics();
 
   private VelocityRedisBridgeConfig velocityRedisBridgeConfig;
+  private String proxyId;
   private PlayerInfoHandler playerInfoHandler;
-
-  private RedisMessageSubscriber redisMessageSubscriber;
+  private final PeerCapabilities peerCapabilities = new PeerCapabilities();
+  private PlayerCommandRouter playerCommandRouter;
+  private RegistrationBatcher registrationBatcher;
+  private PluginMessageForwarder pluginMessageForwarder;
+
+  private BridgeBackend backend;
+  private MessagePublisher messagePublisher;
+  private MessageSubscriber redisMessageSubscriber;
   private VRBPubSubHandler vrbPubSubHandler;
+  private KeyedOrderedExecutor ioExecutor;
+  private final List<ScheduledTask> scheduledTasks = new ArrayList<>();
 
   private static final LegacyChannelIdentifier LEGACY_BUNGEE_CHANNEL =
       new LegacyChannelIdentifier("BungeeCord");
   private static final MinecraftChannelIdentifier MODERN_BUNGEE_CHANNEL =
       MinecraftChannelIdentifier.create("bungeecord", "main");
 
+  private static final long METRICS_SAMPLE_INTERVAL_SECONDS = 10;
+
   @Inject
   public VelocityRedisBridge(ProxyServer server, Logger logger) {
     this.proxy = server;
@@ -69,12 +92,44 @@ public class VelocityRedisBridge {
       return;
     }
 
-    JedisPool jedisPool = createJedisPool(velocityRedisBridgeConfig);
+    backend =
+        velocityRedisBridgeConfig.isRedisCluster()
+            ? new JedisClusterBackend(this)
+            : new JedisBackend(this);
+
+    String uniqueId = backend.getProxyRegistry().claimProxyId();
+    proxyId = uniqueId;
 
-    String uniqueId = new ServerUniqueIdDefiner(jedisPool).define();
-    runKeepServerIdTask(jedisPool, uniqueId);
+    messagePublisher = backend.createMessagePublisher();
 
-    playerInfoHandler = new PlayerInfoHandler(this, jedisPool, uniqueId);
+    playerInfoHandler =
+        new PlayerInfoHandler(
+            this,
+            messagePublisher,
+            backend.createPlayerInfoStorage(uniqueId),
+            velocityRedisBridgeConfig.getPlayerInfoCodec(),
+            uniqueId);
+    playerCommandRouter =
+        new PlayerCommandRouter(playerInfoHandler, messagePublisher, peerCapabilities, uniqueId);
+    ioExecutor =
+        new KeyedOrderedExecutor(
+            "VelocityRedisBridge I/O",
+            velocityRedisBridgeConfig.getIoThreads(),
+            velocityRedisBridgeConfig.getIoQueueCapacity());
+    pluginMessageForwarder =
+        new PluginMessageForwarder(
+            this,
+            messagePublisher,
+            ioExecutor,
+            uniqueId,
+            LEGACY_BUNGEE_CHANNEL,
+            MODERN_BUNGEE_CHANNEL);
+    registrationBatcher =
+        new RegistrationBatcher(
+            playerInfoHandler,
+            logger,
+            velocityRedisBridgeConfig.getLoginMaxBatchSize(),
+            velocityRedisBridgeConfig.getLoginQueueCapacity());
     proxy
         .getEventManager()
         .register(
@@ -88,62 +143,95 @@ public class VelocityRedisBridge {
         .getCommandManager()
         .register(
             proxy.getCommandManager().metaBuilder("velocityredisbridge").aliases("vrb").build(),
-            new VelocityRedisBridgeCommand(uniqueId));
+            new VelocityRedisBridgeCommand(this, uniqueId));
 
     proxy.getChannelRegistrar().register(new LegacyChannelIdentifier("BungeeCord"));
 
-    vrbPubSubHandler = new VRBPubSubHandler(jedisPool, uniqueId);
-
-    redisMessageSubscriber = new RedisMessageSubscriber(this, jedisPool);
+    vrbPubSubHandler =
+        new VRBPubSubHandler(
+            messagePublisher,
+            logger,
+            new KeyedOrderedExecutor(
+                "VelocityRedisBridge PubSub",
+                velocityRedisBridgeConfig.getSubscriberWorkerThreads(),
+                velocityRedisBridgeConfig.getSubscriberQueueCapacity()),
+            uniqueId);
+
+    redisMessageSubscriber = backend.createMessageSubscriber();
+    new DefaultChannelHandlers(this).registerTo(redisMessageSubscriber);
     redisMessageSubscriber.subscribe();
 
-    proxy
-        .getScheduler()
-        .buildTask(this, () -> playerInfoHandler.updateAllRedisKeys())
-        .repeat(velocityRedisBridgeConfig.getRedisCacheExpireSeconds() / 2, TimeUnit.SECONDS)
-        .schedule();
-
-    proxy
-        .getScheduler()
-        .buildTask(this, () -> playerInfoHandler.fetch())
-        .repeat(getVelocityRedisBridgeConfig().getCacheUpdateIntervalSeconds(), TimeUnit.SECONDS)
-        .schedule();
+    ProxyHeartbeat heartbeat = new ProxyHeartbeat(this, backend.getProxyRegistry(), uniqueId);
+    scheduledTasks.add(
+        proxy
+            .getScheduler()
+            .buildTask(
+                this,
+                () -> {
+                  heartbeat.beat();
+                  heartbeat.checkPeers();
+                })
+            .repeat(velocityRedisBridgeConfig.getProxyHeartbeatIntervalSeconds(), TimeUnit.SECONDS)
+            .schedule());
+
+    scheduledTasks.add(
+        proxy
+            .getScheduler()
+            .buildTask(this, () -> playerInfoHandler.updateAllRedisKeys())
+            .repeat(velocityRedisBridgeConfig.getRedisCacheExpireSeconds() / 2, TimeUnit.SECONDS)
+            .schedule());
+
+    scheduledTasks.add(
+        proxy
+            .getScheduler()
+            .buildTask(this, () -> playerInfoHandler.fetch())
+            .repeat(
+                getVelocityRedisBridgeConfig().getCacheUpdateIntervalSeconds(), TimeUnit.SECONDS)
+            .schedule());
+
+    scheduledTasks.add(
+        proxy
+            .getScheduler()
+            .buildTask(this, metrics::sample)
+            .repeat(METRICS_SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS)
+            .schedule());
+    long metricsLogIntervalSeconds = velocityRedisBridgeConfig.getMetricsLogIntervalSeconds();
+    if (metricsLogIntervalSeconds > 0) {
+      MetricsReport report = new MetricsReport(this);
+      scheduledTasks.add(
+          proxy
+              .getScheduler()
+              .buildTask(this, () -> logger.info("Stats: " + report.summary()))
+              .repeat(metricsLogIntervalSeconds, TimeUnit.SECONDS)
+              .schedule());
+    }
 
-    api = new VelocityRedisBridgeAPI(this, jedisPool, vrbPubSubHandler);
+    api = new VelocityRedisBridgeAPI(this, messagePublisher, vrbPubSubHandler, ioExecutor);
   }
 
   @Subscribe
   public void onProxyShutdown(ProxyShutdownEvent event) {
+    scheduledTasks.forEach(ScheduledTask::cancel);
 
-  }
-
-  private JedisPool createJedisPool(VelocityRedisBridgeConfig config) {
-    String hostName = config.getRedisConnectionInfo().getHost();
-    int port = config.getRedisConnectionInfo().getPort();
-
-    if (config.getRedisUserName() != null && config.getRedisPassword() != null) {
-      return new JedisPool(hostName, port, config.getRedisUserName(), config.getRedisPassword());
-    } else if (config.getRedisPassword() != null) {
-      return new JedisPool(new JedisPoolConfig(), hostName, port, 3000, config.getRedisPassword());
-    } else if (config.getRedisUserName() != null && config.getRedisPassword() == null) {
-      throw new IllegalArgumentException(
-          "Redis password cannot be null if redis username is not null");
-    } else {
-      return new JedisPool(new JedisPoolConfig(), hostName, port);
+    if (registrationBatcher != null) {
+      registrationBatcher.close();
+    }
+    if (redisMessageSubscriber != null) {
+      redisMessageSubscriber.close();
+      redisMessageSubscriber.deleteProxyChannels(proxyId);
+    }
+    if (vrbPubSubHandler != null) {
+      vrbPubSubHandler.close();
+    }
+    if (ioExecutor != null) {
+      // let the requests that are already queued reach the publisher
+      ioExecutor.shutdown(5, TimeUnit.SECONDS);
+    }
+    if (messagePublisher != null) {
+      messagePublisher.close();
+    }
+    if (backend != null) {
+      backend.close();
     }
-  }
-
-  private void runKeepServerIdTask(JedisPool jedisPool, String serverId) {
-    proxy
-        .getScheduler()
-        .buildTask(
-            this,
-            () -> {
-              try (Jedis jedis = jedisPool.getResource()) {
-                jedis.expire(RedisKeys.SERVER_ID_PREFIX + ":" + serverId, 600);
-              }
-            })
-        .repeat(5, TimeUnit.MINUTES)
-        .schedule();
   }
 }
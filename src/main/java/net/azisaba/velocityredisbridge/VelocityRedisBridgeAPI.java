@@ -2,25 +2,32 @@ package net.azisaba.velocityredisbridge;
 
 import com.velocitypowered.api.proxy.Player;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.redis.MessagePublisher;
 import net.azisaba.velocityredisbridge.redis.RedisKeys;
 import net.azisaba.velocityredisbridge.redis.VRBPubSubHandler;
+import net.azisaba.velocityredisbridge.util.KeyedOrderedExecutor;
 import net.azisaba.velocityredisbridge.util.PlayerInfo;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import org.jetbrains.annotations.NotNull;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
 @RequiredArgsConstructor
 public class VelocityRedisBridgeAPI {
 
   private final VelocityRedisBridge plugin;
-  private final JedisPool jedisPool;
+  private final MessagePublisher publisher;
 
   private final VRBPubSubHandler pubSubHandler;
+  private final KeyedOrderedExecutor ioExecutor;
 
   /**
    * Transfers the specified player to the specified server. Even if the player is connected to a
@@ -28,20 +35,34 @@ public class VelocityRedisBridgeAPI {
    *
    * @param playerName the specified player name to transfer
    * @param serverName the server to transfer to
+   * @return Returns a future completed once the request has been handled locally or published, or
+   *     failed if redis could not be reached in time
    */
-  public void sendPlayer(@NotNull String playerName, @NotNull String serverName) {
+  public CompletableFuture<Void> sendPlayerAsync(
+      @NotNull String playerName, @NotNull String serverName) {
     Optional<Player> player = plugin.getProxy().getPlayer(playerName);
     if (player.isPresent()) {
-      plugin
-          .getProxy()
-          .getServer(serverName)
-          .ifPresent(server -> player.get().createConnectionRequest(server).connect());
-      return;
+      sendPlayer(player.get(), serverName);
+      return CompletableFuture.completedFuture(null);
     }
 
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.publish(RedisKeys.SEND_SERVER_REQUEST.getKey(), playerName + ":" + serverName);
-    }
+    return runIo(
+        playerKey(playerName),
+        () ->
+            plugin
+                .getPlayerCommandRouter()
+                .route(RedisKeys.SEND_SERVER_REQUEST, playerName, serverName));
+  }
+
+  /**
+   * Same as {@link #sendPlayerAsync(String, String)}, but never waits for redis. Failures are
+   * logged.
+   *
+   * @param playerName the specified player name to transfer
+   * @param serverName the server to transfer to
+   */
+  public void sendPlayer(@NotNull String playerName, @NotNull String serverName) {
+    logFailure(sendPlayerAsync(playerName, serverName), "send " + playerName + " to " + serverName);
   }
 
   /**
@@ -67,11 +88,22 @@ public class VelocityRedisBridgeAPI {
    * Sends a specified message to all players in the velocity server network.
    *
    * @param message the message to send
+   * @return Returns a future completed once the message has been published, or failed if redis
+   *     could not be reached in time
+   */
+  public CompletableFuture<Void> sendMessageToAllAsync(String message) {
+    String channel = RedisKeys.SEND_MESSAGE_TO_ALL.getKey();
+    return runIo(channel, () -> publisher.publish(channel, message));
+  }
+
+  /**
+   * Same as {@link #sendMessageToAllAsync(String)}, but never waits for redis. Failures are
+   * logged.
+   *
+   * @param message the message to send
    */
   public void sendMessageToAll(String message) {
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.publish(RedisKeys.SEND_MESSAGE_TO_ALL.getKey(), message);
-    }
+    logFailure(sendMessageToAllAsync(message), "send a message to all players");
   }
 
   /**
@@ -81,17 +113,33 @@ public class VelocityRedisBridgeAPI {
    *
    * @param playerName the specified player name to send the message
    * @param message    the message to send
+   * @return Returns a future completed once the message has been sent locally or published, or
+   *     failed if redis could not be reached in time
    */
-  public void sendMessageToPlayer(String playerName, String message) {
+  public CompletableFuture<Void> sendMessageToPlayerAsync(String playerName, String message) {
     Optional<Player> player = plugin.getProxy().getPlayer(playerName);
     if (player.isPresent()) {
       player.get().sendMessage(Component.text(message));
-      return;
+      return CompletableFuture.completedFuture(null);
     }
 
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.publish(RedisKeys.SEND_MESSAGE_TO_PLAYER.getKey(), playerName + ":" + message);
-    }
+    return runIo(
+        playerKey(playerName),
+        () ->
+            plugin
+                .getPlayerCommandRouter()
+                .route(RedisKeys.SEND_MESSAGE_TO_PLAYER, playerName, message));
+  }
+
+  /**
+   * Same as {@link #sendMessageToPlayerAsync(String, String)}, but never waits for redis. Failures
+   * are logged.
+   *
+   * @param playerName the specified player name to send the message
+   * @param message    the message to send
+   */
+  public void sendMessageToPlayer(String playerName, String message) {
+    logFailure(sendMessageToPlayerAsync(playerName, message), "send a message to " + playerName);
   }
 
   /**
@@ -99,11 +147,22 @@ public class VelocityRedisBridgeAPI {
    * server.
    *
    * @param messageRaw the raw message to send
+   * @return Returns a future completed once the message has been published, or failed if redis
+   *     could not be reached in time
+   */
+  public CompletableFuture<Void> sendRawMessageToAllAsync(String messageRaw) {
+    String channel = RedisKeys.SEND_RAW_MESSAGE_TO_ALL.getKey();
+    return runIo(channel, () -> publisher.publish(channel, messageRaw));
+  }
+
+  /**
+   * Same as {@link #sendRawMessageToAllAsync(String)}, but never waits for redis. Failures are
+   * logged.
+   *
+   * @param messageRaw the raw message to send
    */
   public void sendRawMessageToAll(String messageRaw) {
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.publish(RedisKeys.SEND_RAW_MESSAGE_TO_ALL.getKey(), messageRaw);
-    }
+    logFailure(sendRawMessageToAllAsync(messageRaw), "send a raw message to all players");
   }
 
   /**
@@ -113,17 +172,35 @@ public class VelocityRedisBridgeAPI {
    *
    * @param playerName the specified player name to send the message
    * @param messageRaw the raw message to send
+   * @return Returns a future completed once the message has been sent locally or published, or
+   *     failed if redis could not be reached in time
    */
-  public void sendRawMessageToPlayer(String playerName, String messageRaw) {
+  public CompletableFuture<Void> sendRawMessageToPlayerAsync(String playerName, String messageRaw) {
     Optional<Player> player = plugin.getProxy().getPlayer(playerName);
     if (player.isPresent()) {
       player.get().sendMessage(GsonComponentSerializer.gson().deserialize(messageRaw));
-      return;
+      return CompletableFuture.completedFuture(null);
     }
 
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.publish(RedisKeys.SEND_RAW_MESSAGE_TO_PLAYER.getKey(), playerName + ":" + messageRaw);
-    }
+    return runIo(
+        playerKey(playerName),
+        () ->
+            plugin
+                .getPlayerCommandRouter()
+                .route(RedisKeys.SEND_RAW_MESSAGE_TO_PLAYER, playerName, messageRaw));
+  }
+
+  /**
+   * Same as {@link #sendRawMessageToPlayerAsync(String, String)}, but never waits for redis.
+   * Failures are logged.
+   *
+   * @param playerName the specified player name to send the message
+   * @param messageRaw the raw message to send
+   */
+  public void sendRawMessageToPlayer(String playerName, String messageRaw) {
+    logFailure(
+        sendRawMessageToPlayerAsync(playerName, messageRaw),
+        "send a raw message to " + playerName);
   }
 
   /**
@@ -132,17 +209,30 @@ public class VelocityRedisBridgeAPI {
    *
    * @param playerName the specified player name to kick
    * @param reason     the reason to kick the player
+   * @return Returns a future completed once the player has been kicked locally or the request has
+   *     been published, or failed if redis could not be reached in time
    */
-  public void kickPlayer(String playerName, String reason) {
+  public CompletableFuture<Void> kickPlayerAsync(String playerName, String reason) {
     Optional<Player> player = plugin.getProxy().getPlayer(playerName);
     if (player.isPresent()) {
       player.get().disconnect(Component.text(reason));
-      return;
+      return CompletableFuture.completedFuture(null);
     }
 
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.publish(RedisKeys.KICK_PLAYER.getKey(), playerName + ":" + reason);
-    }
+    return runIo(
+        playerKey(playerName),
+        () -> plugin.getPlayerCommandRouter().route(RedisKeys.KICK_PLAYER, playerName, reason));
+  }
+
+  /**
+   * Same as {@link #kickPlayerAsync(String, String)}, but never waits for redis. Failures are
+   * logged.
+   *
+   * @param playerName the specified player name to kick
+   * @param reason     the reason to kick the player
+   */
+  public void kickPlayer(String playerName, String reason) {
+    logFailure(kickPlayerAsync(playerName, reason), "kick " + playerName);
   }
 
   /**
@@ -165,6 +255,19 @@ public class VelocityRedisBridgeAPI {
     return Optional.ofNullable(plugin.getPlayerInfoHandler().get(uuid));
   }
 
+  /**
+   * Gets the names of the players in the network whose name starts with the specified prefix,
+   * ignoring case. Only the matching range of names is read, so this is cheap enough to call on
+   * every tab completion.
+   *
+   * @param prefix the prefix of the name
+   * @param limit  the maximum number of names to return
+   * @return Returns the names in alphabetical order
+   */
+  public List<String> completeName(String prefix, int limit) {
+    return plugin.getPlayerInfoHandler().completeName(prefix, limit);
+  }
+
   /**
    * Gets PlayerInfo of all players connected to the network
    *
@@ -204,4 +307,58 @@ public class VelocityRedisBridgeAPI {
   public VRBPubSubHandler getPubSubHandler() {
     return pubSubHandler;
   }
+
+  /**
+   * Gets the I/O key of the commands to the specified player. Player names are case-insensitive,
+   * so commands to "Steve" and "steve" have to share a lane to stay in order.
+   */
+  private static String playerKey(String playerName) {
+    return playerName.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Runs the specified redis operation on the I/O executor. Operations with equal keys run in the
+   * order they were requested, so that commands to the same player are never reordered.
+   *
+   * @param key       the key whose operations must run in order
+   * @param operation the operation, which may throw or return a failed future
+   * @return Returns a future completed with the outcome of the operation
+   */
+  private CompletableFuture<Void> runIo(Object key, Supplier<CompletableFuture<?>> operation) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    Runnable task =
+        () -> {
+          try {
+            operation
+                .get()
+                .whenComplete(
+                    (value, throwable) -> {
+                      if (throwable != null) {
+                        result.completeExceptionally(throwable);
+                      } else {
+                        result.complete(null);
+                      }
+                    });
+          } catch (RuntimeException e) {
+            // e.g. the pool was exhausted for longer than redis.max-wait-millis
+            result.completeExceptionally(e);
+          }
+        };
+    if (!ioExecutor.execute(key, task)) {
+      result.completeExceptionally(new RejectedExecutionException("I/O queue is full"));
+    }
+    return result;
+  }
+
+  private void logFailure(CompletableFuture<Void> future, String action) {
+    future.whenComplete(
+        (value, throwable) -> {
+          if (throwable == null) {
+            return;
+          }
+          Throwable cause =
+              throwable instanceof CompletionException ? throwable.getCause() : throwable;
+          plugin.getLogger().warning("Failed to " + action + ": " + cause);
+        });
+  }
 }
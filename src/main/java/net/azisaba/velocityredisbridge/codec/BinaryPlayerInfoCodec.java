@@ -0,0 +1,247 @@
+package net.azisaba.velocityredisbridge.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * Compact encoding of PlayerInfo. A record is a magic byte, a byte of presence flags, the UUID as
+ * two longs, the port as a zigzag varint and every present string as a varint length followed by
+ * UTF-8. A notification is a different magic byte, the origin proxy id, the sequence number as a
+ * varint and the record without its magic byte.
+ *
+ * <p>Proxy and server names repeat across every player, so decoded names are interned.
+ */
+public class BinaryPlayerInfoCodec implements PlayerInfoCodec {
+
+  // JSON always starts with '{', so these never collide with records of the JSON codec
+  static final byte RECORD_MAGIC = 0x01;
+  static final byte NOTIFICATION_MAGIC = 0x02;
+
+  private static final int FLAG_UUID = 1;
+  private static final int FLAG_USERNAME = 1 << 1;
+  private static final int FLAG_HOST_NAME = 1 << 2;
+  private static final int FLAG_PROXY_SERVER = 1 << 3;
+  private static final int FLAG_CHILD_SERVER = 1 << 4;
+
+  private static final int MAX_INTERNED_NAMES = 4096;
+  private static final ConcurrentHashMap<String, String> INTERNED_NAMES = new ConcurrentHashMap<>();
+
+  BinaryPlayerInfoCodec() {}
+
+  @Override
+  public byte[] encode(PlayerInfo info) {
+    ByteWriter writer = new ByteWriter(64);
+    writer.writeByte(RECORD_MAGIC);
+    writeInfo(writer, info);
+    return writer.toByteArray();
+  }
+
+  @Override
+  public byte[] encodeNotification(PlayerInfoNotification notification) {
+    ByteWriter writer = new ByteWriter(80);
+    writer.writeByte(NOTIFICATION_MAGIC);
+    writer.writeString(utf8(notification.getOrigin()));
+    writer.writeVarLong(notification.getSequence());
+    writeInfo(writer, notification.getInfo());
+    return writer.toByteArray();
+  }
+
+  PlayerInfo decode(byte[] data) {
+    ByteReader reader = new ByteReader(data);
+    if (reader.readByte() != RECORD_MAGIC) {
+      throw new IllegalArgumentException("Not a binary PlayerInfo record");
+    }
+    return readInfo(reader);
+  }
+
+  PlayerInfoNotification decodeNotification(byte[] data) {
+    ByteReader reader = new ByteReader(data);
+    if (reader.readByte() != NOTIFICATION_MAGIC) {
+      throw new IllegalArgumentException("Not a binary PlayerInfo notification");
+    }
+    String origin = reader.readString(true);
+    long sequence = reader.readVarLong();
+    return new PlayerInfoNotification(origin, sequence, readInfo(reader));
+  }
+
+  private static void writeInfo(ByteWriter writer, PlayerInfo info) {
+    byte[] username = utf8(info.getUsername());
+    byte[] hostName = utf8(info.getHostName());
+    byte[] proxyServer = utf8(info.getProxyServer());
+    byte[] childServer = utf8(info.getChildServer());
+
+    int flags = 0;
+    if (info.getUuid() != null) {
+      flags |= FLAG_UUID;
+    }
+    if (username != null) {
+      flags |= FLAG_USERNAME;
+    }
+    if (hostName != null) {
+      flags |= FLAG_HOST_NAME;
+    }
+    if (proxyServer != null) {
+      flags |= FLAG_PROXY_SERVER;
+    }
+    if (childServer != null) {
+      flags |= FLAG_CHILD_SERVER;
+    }
+    writer.writeByte(flags);
+
+    if (info.getUuid() != null) {
+      writer.writeLong(info.getUuid().getMostSignificantBits());
+      writer.writeLong(info.getUuid().getLeastSignificantBits());
+    }
+    // the port is -1 in removal notifications
+    writer.writeVarLong((info.getPort() << 1) ^ (info.getPort() >> 31));
+    writer.writeString(username);
+    writer.writeString(hostName);
+    writer.writeString(proxyServer);
+    writer.writeString(childServer);
+  }
+
+  private static PlayerInfo readInfo(ByteReader reader) {
+    int flags = reader.readByte();
+
+    UUID uuid = null;
+    if ((flags & FLAG_UUID) != 0) {
+      uuid = new UUID(reader.readLong(), reader.readLong());
+    }
+    int zigzagPort = (int) reader.readVarLong();
+    int port = (zigzagPort >>> 1) ^ -(zigzagPort & 1);
+
+    String username = (flags & FLAG_USERNAME) != 0 ? reader.readString(false) : null;
+    String hostName = (flags & FLAG_HOST_NAME) != 0 ? reader.readString(false) : null;
+    String proxyServer = (flags & FLAG_PROXY_SERVER) != 0 ? reader.readString(true) : null;
+    String childServer = (flags & FLAG_CHILD_SERVER) != 0 ? reader.readString(true) : null;
+
+    return new PlayerInfo(uuid, username, hostName, port, proxyServer, childServer);
+  }
+
+  private static byte[] utf8(String str) {
+    return str == null ? null : str.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String intern(String str) {
+    String interned = INTERNED_NAMES.get(str);
+    if (interned != null) {
+      return interned;
+    }
+    if (INTERNED_NAMES.size() >= MAX_INTERNED_NAMES) {
+      return str;
+    }
+    interned = INTERNED_NAMES.putIfAbsent(str, str);
+    return interned != null ? interned : str;
+  }
+
+  private static final class ByteWriter {
+
+    private byte[] buffer;
+    private int position;
+
+    private ByteWriter(int initialCapacity) {
+      buffer = new byte[initialCapacity];
+    }
+
+    private void ensureCapacity(int additional) {
+      if (position + additional > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+      }
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    // callers only write strings whose presence flag is set, so null is skipped
+    private void writeString(byte[] utf8) {
+      if (utf8 == null) {
+        return;
+      }
+      writeVarLong(utf8.length);
+      ensureCapacity(utf8.length);
+      System.arraycopy(utf8, 0, buffer, position, utf8.length);
+      position += utf8.length;
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+  }
+
+  private static final class ByteReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    private ByteReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    private int readByte() {
+      require(1);
+      return buffer[position++] & 0xFF;
+    }
+
+    private long readLong() {
+      require(8);
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (buffer[position++] & 0xFF);
+      }
+      return value;
+    }
+
+    private long readVarLong() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (shift >= 64) {
+          throw new IllegalArgumentException("VarLong is too long");
+        }
+        require(1);
+        b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    private String readString(boolean intern) {
+      int length = (int) readVarLong();
+      if (length < 0 || position + length > buffer.length) {
+        throw new IllegalArgumentException("Invalid string length: " + length);
+      }
+      String str = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return intern ? BinaryPlayerInfoCodec.intern(str) : str;
+    }
+
+    private void require(int length) {
+      if (position + length > buffer.length) {
+        throw new IllegalArgumentException("Truncated record at " + position);
+      }
+    }
+  }
+}
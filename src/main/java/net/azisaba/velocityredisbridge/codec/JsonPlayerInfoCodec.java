@@ -0,0 +1,46 @@
+package net.azisaba.velocityredisbridge.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.nio.charset.StandardCharsets;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/** Gson encoding used by every version before the binary codec was introduced. */
+public class JsonPlayerInfoCodec implements PlayerInfoCodec {
+
+  private static final String ORIGIN_FIELD = "origin";
+  private static final String SEQUENCE_FIELD = "seq";
+
+  private final Gson gson = new Gson();
+
+  JsonPlayerInfoCodec() {}
+
+  @Override
+  public byte[] encode(PlayerInfo info) {
+    return gson.toJson(info).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public byte[] encodeNotification(PlayerInfoNotification notification) {
+    // older versions parse the notification as a plain PlayerInfo and ignore the extra fields
+    JsonObject json = gson.toJsonTree(notification.getInfo()).getAsJsonObject();
+    json.addProperty(ORIGIN_FIELD, notification.getOrigin());
+    json.addProperty(SEQUENCE_FIELD, notification.getSequence());
+    return gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+  }
+
+  PlayerInfo decode(byte[] data) {
+    return gson.fromJson(new String(data, StandardCharsets.UTF_8), PlayerInfo.class);
+  }
+
+  PlayerInfoNotification decodeNotification(byte[] data) {
+    JsonObject json = gson.fromJson(new String(data, StandardCharsets.UTF_8), JsonObject.class);
+    PlayerInfo info = gson.fromJson(json, PlayerInfo.class);
+
+    if (!json.has(ORIGIN_FIELD) || !json.has(SEQUENCE_FIELD)) {
+      return new PlayerInfoNotification(null, PlayerInfoNotification.NO_SEQUENCE, info);
+    }
+    return new PlayerInfoNotification(
+        json.get(ORIGIN_FIELD).getAsString(), json.get(SEQUENCE_FIELD).getAsLong(), info);
+  }
+}
@@ -0,0 +1,26 @@
+package net.azisaba.velocityredisbridge.codec;
+
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * Encodes PlayerInfo for storage in redis and for update notifications. Use {@link
+ * PlayerInfoCodecs} to decode, since it accepts data written by any codec.
+ */
+public interface PlayerInfoCodec {
+
+  /**
+   * Encodes the specified PlayerInfo as a stored record.
+   *
+   * @param info the PlayerInfo to encode
+   * @return Returns the encoded record
+   */
+  byte[] encode(PlayerInfo info);
+
+  /**
+   * Encodes the specified update notification.
+   *
+   * @param notification the notification to encode
+   * @return Returns the encoded notification
+   */
+  byte[] encodeNotification(PlayerInfoNotification notification);
+}
@@ -0,0 +1,57 @@
+package net.azisaba.velocityredisbridge.codec;
+
+import java.util.Locale;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+public final class PlayerInfoCodecs {
+
+  public static final BinaryPlayerInfoCodec BINARY = new BinaryPlayerInfoCodec();
+  public static final JsonPlayerInfoCodec JSON = new JsonPlayerInfoCodec();
+
+  private PlayerInfoCodecs() {}
+
+  /**
+   * Gets the codec with the specified name.
+   *
+   * @param name "binary" or "json"
+   * @return Returns the codec
+   * @throws IllegalArgumentException if there is no codec with the name
+   */
+  public static PlayerInfoCodec byName(String name) {
+    switch (name.toLowerCase(Locale.ROOT)) {
+      case "binary":
+        return BINARY;
+      case "json":
+        return JSON;
+      default:
+        throw new IllegalArgumentException("Unknown codec: " + name);
+    }
+  }
+
+  /**
+   * Decodes a stored record written by any codec, including the JSON written by older versions.
+   *
+   * @param data the stored record
+   * @return Returns the decoded PlayerInfo
+   */
+  public static PlayerInfo decode(byte[] data) {
+    if (data.length > 0 && data[0] == BinaryPlayerInfoCodec.RECORD_MAGIC) {
+      return BINARY.decode(data);
+    }
+    return JSON.decode(data);
+  }
+
+  /**
+   * Decodes an update notification written by any codec, including the JSON written by older
+   * versions.
+   *
+   * @param data the notification
+   * @return Returns the decoded notification
+   */
+  public static PlayerInfoNotification decodeNotification(byte[] data) {
+    if (data.length > 0 && data[0] == BinaryPlayerInfoCodec.NOTIFICATION_MAGIC) {
+      return BINARY.decodeNotification(data);
+    }
+    return JSON.decodeNotification(data);
+  }
+}
@@ -0,0 +1,19 @@
+package net.azisaba.velocityredisbridge.codec;
+
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/** An update of a PlayerInfo published by a proxy. */
+@Getter
+@RequiredArgsConstructor
+public class PlayerInfoNotification {
+
+  /** Sequence number of notifications sent by proxies that do not number them. */
+  public static final long NO_SEQUENCE = -1;
+
+  @Nullable private final String origin;
+  private final long sequence;
+  private final PlayerInfo info;
+}
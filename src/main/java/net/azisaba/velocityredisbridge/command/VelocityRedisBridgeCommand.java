@@ -2,17 +2,30 @@ package net.azisaba.velocityredisbridge.command;
 
 import com.velocitypowered.api.command.RawCommand;
 import com.velocitypowered.api.proxy.Player;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.metrics.MetricsReport;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 
 @RequiredArgsConstructor
 public class VelocityRedisBridgeCommand implements RawCommand {
 
+  private static final String STATS_PERMISSION = "velocityredisbridge.command.stats";
+
+  private final VelocityRedisBridge plugin;
   private final String velocityId;
 
   @Override
   public void execute(Invocation invocation) {
+    if (invocation.arguments().trim().equalsIgnoreCase("stats")) {
+      executeStats(invocation);
+      return;
+    }
+
     Component component = Component.text("ProxyID: " + velocityId).color(NamedTextColor.GREEN);
     if (invocation.source() instanceof Player) {
       String serverName = ((Player) invocation.source()).getCurrentServer()
@@ -24,4 +37,29 @@ public class VelocityRedisBridgeCommand implements RawCommand {
 
     invocation.source().sendMessage(component);
   }
+
+  @Override
+  public List<String> suggest(Invocation invocation) {
+    String argument = invocation.arguments().trim().toLowerCase(Locale.ROOT);
+    if ("stats".startsWith(argument) && invocation.source().hasPermission(STATS_PERMISSION)) {
+      return Collections.singletonList("stats");
+    }
+    return Collections.emptyList();
+  }
+
+  private void executeStats(Invocation invocation) {
+    if (!invocation.source().hasPermission(STATS_PERMISSION)) {
+      invocation.source().sendMessage(Component.text("No permission").color(NamedTextColor.RED));
+      return;
+    }
+
+    Component component = Component.text("ProxyID: " + velocityId).color(NamedTextColor.GREEN);
+    for (String line : new MetricsReport(plugin).lines()) {
+      component =
+          component
+              .append(Component.newline())
+              .append(Component.text(line).color(NamedTextColor.GRAY));
+    }
+    invocation.source().sendMessage(component);
+  }
 }
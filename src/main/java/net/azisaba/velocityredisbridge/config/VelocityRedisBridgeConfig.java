@@ -8,6 +8,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -15,6 +19,10 @@ import javax.annotation.Nullable;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodec;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.redis.MessageTransport;
+import net.azisaba.velocityredisbridge.redis.PlayerInfoStorageLayout;
 import org.yaml.snakeyaml.Yaml;
 import redis.clients.jedis.HostAndPort;
 
@@ -29,9 +37,38 @@ public class VelocityRedisBridgeConfig {
   private HostAndPort redisConnectionInfo;
   @Nullable private String redisUserName;
   @Nullable private String redisPassword;
+  private int redisMaxConnections;
+  private long redisMaxWaitMillis;
+  private List<HostAndPort> redisClusterNodes;
 
   private long cacheUpdateIntervalSeconds;
   private long redisCacheExpireSeconds;
+  private PlayerInfoStorageLayout storageLayout;
+  private PlayerInfoCodec playerInfoCodec;
+  private long proxyHeartbeatIntervalSeconds;
+  private long proxyHeartbeatTimeoutSeconds;
+
+  private boolean publisherBatching;
+  private int publisherMaxBatchSize;
+  private long publisherLingerMillis;
+  private int publisherQueueCapacity;
+
+  private int loginMaxBatchSize;
+  private int loginQueueCapacity;
+
+  private int ioThreads;
+  private int ioQueueCapacity;
+
+  private int subscriberWorkerThreads;
+  private int subscriberQueueCapacity;
+  private long subscriberReconnectInitialDelayMillis;
+  private long subscriberReconnectMaxDelayMillis;
+
+  private MessageTransport transport;
+  private long streamMaxLength;
+  private int streamReadCount;
+
+  private long metricsLogIntervalSeconds;
 
   public void load() throws IOException {
     File file = new File(CONFIG_FILE_PATH);
@@ -54,6 +91,21 @@ public class VelocityRedisBridgeConfig {
     if (Objects.equals(redisPassword, "")) {
       redisPassword = null;
     }
+    redisMaxConnections = (int) getLong(redis, "max-connections", 16);
+    redisMaxWaitMillis = getLong(redis, "max-wait-millis", 2000);
+    if (redisMaxWaitMillis < 1) {
+      throw new IOException("redis.max-wait-millis must be positive");
+    }
+    redisClusterNodes = new ArrayList<>();
+    if (redis.get("cluster-nodes") instanceof List) {
+      for (Object node : (List<?>) redis.get("cluster-nodes")) {
+        try {
+          redisClusterNodes.add(HostAndPort.from(String.valueOf(node)));
+        } catch (IllegalArgumentException e) {
+          throw new IOException("Invalid redis.cluster-nodes entry: " + node, e);
+        }
+      }
+    }
 
     if (data.get("cache-update-interval-seconds") instanceof Integer) {
       cacheUpdateIntervalSeconds = (Integer) data.get("cache-update-interval-seconds");
@@ -66,6 +118,97 @@ public class VelocityRedisBridgeConfig {
     } else if (data.get("redis-cache-expire-seconds") instanceof Long) {
       redisCacheExpireSeconds = (Long) data.get("redis-cache-expire-seconds");
     }
+
+    String layout = (String) data.getOrDefault("storage-layout", "key");
+    try {
+      storageLayout = PlayerInfoStorageLayout.valueOf(layout.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unknown storage-layout: " + layout, e);
+    }
+
+    // configs written before the key existed keep the encoding older proxies can read
+    String codec = (String) data.getOrDefault("player-info-codec", "json");
+    try {
+      playerInfoCodec = PlayerInfoCodecs.byName(codec);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unknown player-info-codec: " + codec, e);
+    }
+
+    proxyHeartbeatIntervalSeconds = getLong(data, "proxy-heartbeat-interval-seconds", 5);
+    proxyHeartbeatTimeoutSeconds = getLong(data, "proxy-heartbeat-timeout-seconds", 15);
+    if (proxyHeartbeatTimeoutSeconds <= proxyHeartbeatIntervalSeconds) {
+      throw new IOException(
+          "proxy-heartbeat-timeout-seconds must be longer than proxy-heartbeat-interval-seconds");
+    }
+
+    Map<String, Object> publisher =
+        data.get("publisher") instanceof Map ? dig(data, "publisher") : Collections.emptyMap();
+    // configs written before the section existed keep publishing on the calling thread
+    publisherBatching = Boolean.TRUE.equals(publisher.get("batching"));
+    publisherMaxBatchSize = (int) getLong(publisher, "max-batch-size", 256);
+    publisherLingerMillis = getLong(publisher, "linger-millis", 0);
+    publisherQueueCapacity = (int) getLong(publisher, "queue-capacity", 10000);
+
+    Map<String, Object> login =
+        data.get("login") instanceof Map ? dig(data, "login") : Collections.emptyMap();
+    loginMaxBatchSize = (int) getLong(login, "max-batch-size", 256);
+    loginQueueCapacity = (int) getLong(login, "queue-capacity", 10000);
+    if (loginMaxBatchSize < 1) {
+      throw new IOException("login.max-batch-size must be positive");
+    }
+
+    Map<String, Object> io =
+        data.get("io") instanceof Map ? dig(data, "io") : Collections.emptyMap();
+    ioThreads = (int) getLong(io, "threads", 2);
+    ioQueueCapacity = (int) getLong(io, "queue-capacity", 10000);
+    if (ioThreads < 1) {
+      throw new IOException("io.threads must be positive");
+    }
+
+    Map<String, Object> subscriber =
+        data.get("subscriber") instanceof Map ? dig(data, "subscriber") : Collections.emptyMap();
+    subscriberWorkerThreads = (int) getLong(subscriber, "worker-threads", 4);
+    subscriberQueueCapacity = (int) getLong(subscriber, "queue-capacity", 10000);
+    subscriberReconnectInitialDelayMillis =
+        getLong(subscriber, "reconnect-initial-delay-millis", 500);
+    subscriberReconnectMaxDelayMillis = getLong(subscriber, "reconnect-max-delay-millis", 30000);
+    if (subscriberWorkerThreads < 1) {
+      throw new IOException("subscriber.worker-threads must be positive");
+    }
+    if (subscriberReconnectInitialDelayMillis < 1) {
+      throw new IOException("subscriber.reconnect-initial-delay-millis must be positive");
+    }
+
+    String transportName = (String) data.getOrDefault("transport", "pubsub");
+    try {
+      transport = MessageTransport.valueOf(transportName.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unknown transport: " + transportName, e);
+    }
+
+    Map<String, Object> streams =
+        data.get("streams") instanceof Map ? dig(data, "streams") : Collections.emptyMap();
+    streamMaxLength = getLong(streams, "max-length", 10000);
+    streamReadCount = (int) getLong(streams, "read-count", 256);
+
+    metricsLogIntervalSeconds = getLong(data, "metrics-log-interval-seconds", 0);
+  }
+
+  /**
+   * Gets whether the proxies connect to a redis cluster instead of a single server.
+   *
+   * @return Returns true if any cluster node is configured
+   */
+  public boolean isRedisCluster() {
+    return !redisClusterNodes.isEmpty();
+  }
+
+  private static long getLong(Map<String, Object> data, String key, long defaultValue) {
+    Object value = data.get(key);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    return defaultValue;
   }
 
   private void saveDefaultConfig(File configFilePath) throws IOException {
@@ -9,11 +9,11 @@ import com.velocitypowered.api.event.connection.PluginMessageEvent;
 import com.velocitypowered.api.event.connection.PluginMessageEvent.ForwardResult;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
 import com.velocitypowered.api.proxy.messages.LegacyChannelIdentifier;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
-import com.velocitypowered.api.proxy.server.RegisteredServer;
+import java.util.Arrays;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import net.azisaba.velocityredisbridge.VelocityRedisBridge;
 import net.azisaba.velocityredisbridge.util.PlayerInfo;
@@ -26,6 +26,14 @@ public class BungeeCordPluginMessageReceiveListener {
   private final LegacyChannelIdentifier legacyBungeeChannel;
   private final MinecraftChannelIdentifier modernBungeeChannel;
 
+  // handled without a response
+  private static final byte[] NO_RESPONSE = new byte[0];
+  // Forward and ForwardToPlayer have always answered with just the sub channel
+  private static final byte[] FORWARD_RESPONSE = encodeSubChannel("Forward");
+  private static final byte[] FORWARD_TO_PLAYER_RESPONSE = encodeSubChannel("ForwardToPlayer");
+
+  private final BungeeCordResponseCache responseCache = new BungeeCordResponseCache();
+
   @Subscribe(order = PostOrder.FIRST)
   public void onPluginMessageReceive(PluginMessageEvent event) {
     if (!event.getIdentifier().equals(legacyBungeeChannel)
@@ -39,176 +47,237 @@ public class BungeeCordPluginMessageReceiveListener {
 
     ServerConnection connection = (ServerConnection) event.getSource();
 
-    ByteArrayDataInput receivedData = ByteStreams.newDataInput(event.getData());
+    byte[] data = event.getData();
+    ByteArrayDataInput receivedData = ByteStreams.newDataInput(data);
     String subChannel = receivedData.readUTF();
 
-    // No need to respond
-    if (subChannel.equals("Connect")) {
-      Player player = connection.getPlayer();
-      String server = receivedData.readUTF();
-      VelocityRedisBridge.getApi().sendPlayer(player, server);
-      event.setResult(ForwardResult.handled());
-      return;
-    } else if (subChannel.equals("ConnectOther")) {
-      String playerName = receivedData.readUTF();
-      String serverName = receivedData.readUTF();
-      VelocityRedisBridge.getApi().sendPlayer(playerName, serverName);
-      event.setResult(ForwardResult.handled());
-      return;
-    } else if (subChannel.equals("Message")) {
-      String nameOrAll = receivedData.readUTF();
-      String message = receivedData.readUTF();
-
-      if (nameOrAll.equals("ALL")) {
-        VelocityRedisBridge.getApi().sendMessageToAll(message);
-      } else {
-        VelocityRedisBridge.getApi().sendMessageToPlayer(nameOrAll, message);
-      }
-      event.setResult(ForwardResult.handled());
-      return;
-    } else if (subChannel.equals("MessageRaw")) {
-      String nameOrAllRaw = receivedData.readUTF();
-      String messageRaw = receivedData.readUTF();
-
-      if (nameOrAllRaw.equals("ALL")) {
-        VelocityRedisBridge.getApi().sendRawMessageToAll(messageRaw);
-      } else {
-        VelocityRedisBridge.getApi().sendRawMessageToPlayer(nameOrAllRaw, messageRaw);
-      }
-      event.setResult(ForwardResult.handled());
-      return;
-    } else if (subChannel.equals("KickPlayer")) {
-      String playerName = receivedData.readUTF();
-      String reason = receivedData.readUTF();
-      VelocityRedisBridge.getApi().kickPlayer(playerName, reason);
-      event.setResult(ForwardResult.handled());
+    byte[] response;
+    switch (subChannel) {
+      case "Connect":
+        VelocityRedisBridge.getApi().sendPlayer(connection.getPlayer(), receivedData.readUTF());
+        response = NO_RESPONSE;
+        break;
+      case "ConnectOther":
+        connectOther(receivedData);
+        response = NO_RESPONSE;
+        break;
+      case "Message":
+        message(receivedData);
+        response = NO_RESPONSE;
+        break;
+      case "MessageRaw":
+        messageRaw(receivedData);
+        response = NO_RESPONSE;
+        break;
+      case "KickPlayer":
+        kickPlayer(receivedData);
+        response = NO_RESPONSE;
+        break;
+      case "PlayerList":
+        // Polled by backend servers, answered from pre-encoded responses
+        response =
+            responseCache.playerList(
+                plugin.getPlayerInfoHandler(), plugin.getProxy(), receivedData.readUTF());
+        break;
+      case "GetServers":
+        response = responseCache.servers(plugin.getProxy());
+        break;
+      case "ServerIP":
+        response = responseCache.serverIp(plugin.getProxy(), receivedData.readUTF());
+        break;
+      case "IP":
+        response = ip(connection);
+        break;
+      case "IPOther":
+        response = ipOther(receivedData);
+        break;
+      case "PlayerCount":
+        response = playerCount(receivedData);
+        break;
+      case "GetServer":
+        response = getServer(connection);
+        break;
+      case "Forward":
+        forward(event.getIdentifier(), data, receivedData.readUTF());
+        response = FORWARD_RESPONSE;
+        break;
+      case "ForwardToPlayer":
+        forwardToPlayer(event.getIdentifier(), data, receivedData.readUTF());
+        response = FORWARD_TO_PLAYER_RESPONSE;
+        break;
+      case "UUID":
+        response = uuid(connection);
+        break;
+      case "UUIDOther":
+        response = uuidOther(receivedData);
+        break;
+      default:
+        // Unknown sub channel
+        return;
+    }
+
+    if (response == null) {
       return;
     }
+    if (response != NO_RESPONSE) {
+      connection.sendPluginMessage(event.getIdentifier(), response);
+    }
+    event.setResult(ForwardResult.handled());
+  }
 
-    ByteArrayDataOutput responseData = ByteStreams.newDataOutput();
-    responseData.writeUTF(subChannel);
+  private void connectOther(ByteArrayDataInput receivedData) {
+    String playerName = receivedData.readUTF();
+    String serverName = receivedData.readUTF();
+    VelocityRedisBridge.getApi().sendPlayer(playerName, serverName);
+  }
 
-    if (subChannel.equals("IP")) {
-      Player player = connection.getPlayer();
-      PlayerInfo info = plugin.getPlayerInfoHandler().get(player.getUniqueId());
-      String hostName = info.getHostName();
-      int port = info.getPort();
-
-      responseData.writeUTF(hostName);
-      responseData.writeInt(port);
-    } else if (subChannel.equals("IPOther")) {
-      String playerName = receivedData.readUTF();
-      PlayerInfo info = plugin.getPlayerInfoHandler().get(playerName);
-      if (info == null) {
-        return;
-      }
-
-      responseData.writeUTF(info.getUsername());
-      responseData.writeUTF(info.getHostName());
-      responseData.writeInt(info.getPort());
-    } else if (subChannel.equals("PlayerCount")) {
-      String serverNameOrAll = receivedData.readUTF();
-      if (serverNameOrAll.equals("ALL")) {
-        responseData.writeUTF("ALL");
-        responseData.writeInt(plugin.getPlayerInfoHandler().getAllPlayersCount());
-      } else {
-        responseData.writeUTF(serverNameOrAll);
-        responseData.writeInt(plugin.getPlayerInfoHandler().getPlayersCount(serverNameOrAll));
-      }
-    } else if (subChannel.equals("PlayerList")) {
-      String serverNameOrAll = receivedData.readUTF();
-      String playerList;
-      if (serverNameOrAll.equals("ALL")) {
-        playerList =
-            plugin.getPlayerInfoHandler().getAllPlayerInfo().values().stream()
-                .map(PlayerInfo::getUsername)
-                .collect(Collectors.joining(", "));
-
-      } else {
-        playerList =
-            plugin.getPlayerInfoHandler().getAllPlayerInfoInChildServer(serverNameOrAll).stream()
-                .map(PlayerInfo::getUsername)
-                .collect(Collectors.joining(", "));
-      }
-      responseData.writeUTF(serverNameOrAll);
-      responseData.writeUTF(playerList);
-    } else if (subChannel.equals("GetServers")) {
-      String serverListStr =
-          plugin.getProxy().getAllServers().stream()
-              .map(server -> server.getServerInfo().getName())
-              .collect(Collectors.joining(", "));
-
-      responseData.writeUTF(serverListStr);
-    } else if (subChannel.equals("GetServer")) {
-      Player player = connection.getPlayer();
-      Optional<ServerConnection> serverConnection = player.getCurrentServer();
-      if (!serverConnection.isPresent()) {
-        return;
-      }
-
-      responseData.writeUTF(serverConnection.get().getServerInfo().getName());
-    } else if (subChannel.equals("Forward")) {
-      String target = receivedData.readUTF();
-      byte[] toForward = prepareForwardMessage(receivedData);
-
-      if (target.equals("ALL")) {
-        for (RegisteredServer rs : plugin.getProxy().getAllServers()) {
-          rs.sendPluginMessage(event.getIdentifier(), toForward);
-        }
-      } else {
-        plugin.getProxy().getServer(target)
-            .ifPresent(conn -> conn.sendPluginMessage(event.getIdentifier(), toForward));
-      }
-    } else if (subChannel.equals("ForwardToPlayer")) {
-      String playerName = receivedData.readUTF();
-      plugin.getProxy().getPlayer(playerName)
-          .flatMap(Player::getCurrentServer)
-          .ifPresent(server -> server.sendPluginMessage(event.getIdentifier(),
-              prepareForwardMessage(receivedData)));
-    } else if (subChannel.equals("UUID")) {
-      Player player = connection.getPlayer();
-      responseData.writeUTF(player.getUniqueId().toString());
-    } else if (subChannel.equals("UUIDOther")) {
-      String playerName = receivedData.readUTF();
-      PlayerInfo info = plugin.getPlayerInfoHandler().get(playerName);
-      if (info == null) {
-        return;
-      }
-      responseData.writeUTF(info.getUsername());
-      responseData.writeUTF(info.getUuid().toString());
-    } else if (subChannel.equals("ServerIP")) {
-      String serverName = receivedData.readUTF();
-      Optional<RegisteredServer> server = plugin.getProxy().getServer(serverName);
-
-      if (!server.isPresent()) {
-        return;
-      }
+  private void message(ByteArrayDataInput receivedData) {
+    String nameOrAll = receivedData.readUTF();
+    String message = receivedData.readUTF();
+
+    if (nameOrAll.equals("ALL")) {
+      VelocityRedisBridge.getApi().sendMessageToAll(message);
+    } else {
+      VelocityRedisBridge.getApi().sendMessageToPlayer(nameOrAll, message);
+    }
+  }
 
-      String hostName = server.get().getServerInfo().getAddress().getHostString();
-      int port = server.get().getServerInfo().getAddress().getPort();
+  private void messageRaw(ByteArrayDataInput receivedData) {
+    String nameOrAllRaw = receivedData.readUTF();
+    String messageRaw = receivedData.readUTF();
 
-      responseData.writeUTF(server.get().getServerInfo().getName());
-      responseData.writeUTF(hostName);
-      responseData.writeShort(port);
+    if (nameOrAllRaw.equals("ALL")) {
+      VelocityRedisBridge.getApi().sendRawMessageToAll(messageRaw);
     } else {
-      // Unknown sub channel
-      return;
+      VelocityRedisBridge.getApi().sendRawMessageToPlayer(nameOrAllRaw, messageRaw);
+    }
+  }
+
+  private void kickPlayer(ByteArrayDataInput receivedData) {
+    String playerName = receivedData.readUTF();
+    String reason = receivedData.readUTF();
+    VelocityRedisBridge.getApi().kickPlayer(playerName, reason);
+  }
+
+  private byte[] ip(ServerConnection connection) {
+    Player player = connection.getPlayer();
+    PlayerInfo info = plugin.getPlayerInfoHandler().get(player.getUniqueId());
+
+    ByteArrayDataOutput responseData = response("IP");
+    responseData.writeUTF(info.getHostName());
+    responseData.writeInt(info.getPort());
+    return responseData.toByteArray();
+  }
+
+  private byte[] ipOther(ByteArrayDataInput receivedData) {
+    String playerName = receivedData.readUTF();
+    PlayerInfo info = plugin.getPlayerInfoHandler().get(playerName);
+    if (info == null) {
+      return null;
     }
 
-    connection.sendPluginMessage(event.getIdentifier(), responseData.toByteArray());
-    event.setResult(ForwardResult.handled());
+    ByteArrayDataOutput responseData = response("IPOther");
+    responseData.writeUTF(info.getUsername());
+    responseData.writeUTF(info.getHostName());
+    responseData.writeInt(info.getPort());
+    return responseData.toByteArray();
   }
 
-  private byte[] prepareForwardMessage(ByteArrayDataInput in) {
-    String channel = in.readUTF();
-    short messageLength = in.readShort();
-    byte[] message = new byte[messageLength];
-    in.readFully(message);
+  private byte[] playerCount(ByteArrayDataInput receivedData) {
+    String serverNameOrAll = receivedData.readUTF();
 
-    ByteArrayDataOutput forwarded = ByteStreams.newDataOutput();
-    forwarded.writeUTF(channel);
-    forwarded.writeShort(messageLength);
-    forwarded.write(message);
-    return forwarded.toByteArray();
+    ByteArrayDataOutput responseData = response("PlayerCount");
+    responseData.writeUTF(serverNameOrAll);
+    if (serverNameOrAll.equals("ALL")) {
+      responseData.writeInt(plugin.getPlayerInfoHandler().getAllPlayersCount());
+    } else {
+      responseData.writeInt(plugin.getPlayerInfoHandler().getPlayersCount(serverNameOrAll));
+    }
+    return responseData.toByteArray();
+  }
+
+  private byte[] getServer(ServerConnection connection) {
+    Optional<ServerConnection> serverConnection = connection.getPlayer().getCurrentServer();
+    if (serverConnection.isEmpty()) {
+      return null;
+    }
+
+    ByteArrayDataOutput responseData = response("GetServer");
+    responseData.writeUTF(serverConnection.get().getServerInfo().getName());
+    return responseData.toByteArray();
+  }
+
+  private void forward(ChannelIdentifier identifier, byte[] data, String target) {
+    // the same array is handed to every server, none of them modifies it
+    byte[] toForward = forwardedMessage(data);
+    if (target.equals("ALL")) {
+      plugin.getPluginMessageForwarder().forwardToAll(identifier, toForward);
+    } else {
+      plugin.getPluginMessageForwarder().forwardToServer(identifier, target, toForward);
+    }
+  }
+
+  private void forwardToPlayer(ChannelIdentifier identifier, byte[] data, String playerName) {
+    plugin
+        .getPluginMessageForwarder()
+        .forwardToPlayer(identifier, playerName, forwardedMessage(data));
+  }
+
+  private byte[] uuid(ServerConnection connection) {
+    ByteArrayDataOutput responseData = response("UUID");
+    responseData.writeUTF(connection.getPlayer().getUniqueId().toString());
+    return responseData.toByteArray();
+  }
+
+  private byte[] uuidOther(ByteArrayDataInput receivedData) {
+    String playerName = receivedData.readUTF();
+    PlayerInfo info = plugin.getPlayerInfoHandler().get(playerName);
+    if (info == null) {
+      return null;
+    }
+
+    ByteArrayDataOutput responseData = response("UUIDOther");
+    responseData.writeUTF(info.getUsername());
+    responseData.writeUTF(info.getUuid().toString());
+    return responseData.toByteArray();
+  }
+
+  private static ByteArrayDataOutput response(String subChannel) {
+    ByteArrayDataOutput responseData = ByteStreams.newDataOutput();
+    responseData.writeUTF(subChannel);
+    return responseData;
+  }
+
+  private static byte[] encodeSubChannel(String subChannel) {
+    return response(subChannel).toByteArray();
+  }
+
+  /**
+   * Cuts the channel, length and message that follow the sub channel and the target out of a
+   * Forward or ForwardToPlayer request. They are laid out exactly as the target servers expect, so
+   * they are copied once instead of being decoded and encoded again.
+   *
+   * @param data the request
+   * @return Returns the message to forward
+   */
+  private static byte[] forwardedMessage(byte[] data) {
+    int offset = skipUtf(data, skipUtf(data, 0));
+    int messageOffset = skipUtf(data, offset);
+    int end = messageOffset + 2 + readUnsignedShort(data, messageOffset);
+    if (end > data.length) {
+      throw new IllegalArgumentException("Truncated forward message");
+    }
+    return Arrays.copyOfRange(data, offset, end);
+  }
+
+  private static int skipUtf(byte[] data, int offset) {
+    return offset + 2 + readUnsignedShort(data, offset);
+  }
+
+  private static int readUnsignedShort(byte[] data, int offset) {
+    if (offset + 2 > data.length) {
+      throw new IllegalArgumentException("Truncated forward message");
+    }
+    return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
   }
 }
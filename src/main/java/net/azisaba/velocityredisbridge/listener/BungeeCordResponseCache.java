@@ -0,0 +1,148 @@
+package net.azisaba.velocityredisbridge.listener;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.redis.PlayerInfoHandler;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * Encoded responses of the sub channels that backend servers poll every few ticks. A response is
+ * encoded again only after the players or servers it lists have changed, so repeated polling costs
+ * a version check and a map lookup.
+ *
+ * <p>Responses are shared between connections and must not be modified.
+ */
+class BungeeCordResponseCache {
+
+  private static final String ALL = "ALL";
+
+  private final ConcurrentHashMap<String, VersionedResponse> playerLists =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, ServerResponse> serverIps = new ConcurrentHashMap<>();
+  private volatile ServersResponse servers;
+
+  /**
+   * Gets the response of {@code PlayerList}.
+   *
+   * @param handler         the handler holding the players
+   * @param proxy           the proxy, to tell existing servers from arbitrary names
+   * @param serverNameOrAll the name of the child server, or ALL
+   * @return Returns the encoded response
+   */
+  byte[] playerList(PlayerInfoHandler handler, ProxyServer proxy, String serverNameOrAll) {
+    boolean all = serverNameOrAll.equals(ALL);
+    // read before the players, so that a concurrent change makes the next request encode again
+    long version =
+        all ? handler.getMembershipVersion() : handler.getMembershipVersion(serverNameOrAll);
+
+    VersionedResponse cached = playerLists.get(serverNameOrAll);
+    if (cached != null && cached.version == version) {
+      return cached.response;
+    }
+
+    Collection<PlayerInfo> players =
+        all
+            ? handler.getAllPlayerInfo().values()
+            : handler.getAllPlayerInfoInChildServer(serverNameOrAll);
+    ByteArrayDataOutput out = ByteStreams.newDataOutput();
+    out.writeUTF("PlayerList");
+    out.writeUTF(serverNameOrAll);
+    out.writeUTF(players.stream().map(PlayerInfo::getUsername).collect(Collectors.joining(", ")));
+    byte[] response = out.toByteArray();
+
+    // names of servers that do not exist are answered but not kept, so they cannot fill the map
+    if (all || proxy.getServer(serverNameOrAll).isPresent()) {
+      playerLists.put(serverNameOrAll, new VersionedResponse(version, response));
+    }
+    return response;
+  }
+
+  /**
+   * Gets the response of {@code GetServers}.
+   *
+   * @param proxy the proxy
+   * @return Returns the encoded response
+   */
+  byte[] servers(ProxyServer proxy) {
+    List<ServerInfo> infos = new ArrayList<>();
+    for (RegisteredServer server : proxy.getAllServers()) {
+      infos.add(server.getServerInfo());
+    }
+
+    ServersResponse cached = servers;
+    if (cached != null && cached.infos.equals(infos)) {
+      return cached.response;
+    }
+
+    ByteArrayDataOutput out = ByteStreams.newDataOutput();
+    out.writeUTF("GetServers");
+    out.writeUTF(infos.stream().map(ServerInfo::getName).collect(Collectors.joining(", ")));
+    byte[] response = out.toByteArray();
+    servers = new ServersResponse(infos, response);
+    return response;
+  }
+
+  /**
+   * Gets the response of {@code ServerIP}.
+   *
+   * @param proxy      the proxy
+   * @param serverName the name of the server
+   * @return Returns the encoded response, or null if the server does not exist
+   */
+  byte[] serverIp(ProxyServer proxy, String serverName) {
+    Optional<RegisteredServer> server = proxy.getServer(serverName);
+    if (server.isEmpty()) {
+      serverIps.remove(serverName);
+      return null;
+    }
+
+    ServerInfo info = server.get().getServerInfo();
+    ServerResponse cached = serverIps.get(serverName);
+    // ServerInfo compares the name and the address, which is everything the response contains
+    if (cached != null && cached.info.equals(info)) {
+      return cached.response;
+    }
+
+    InetSocketAddress address = info.getAddress();
+    ByteArrayDataOutput out = ByteStreams.newDataOutput();
+    out.writeUTF("ServerIP");
+    out.writeUTF(info.getName());
+    out.writeUTF(address.getHostString());
+    out.writeShort(address.getPort());
+    byte[] response = out.toByteArray();
+    serverIps.put(serverName, new ServerResponse(info, response));
+    return response;
+  }
+
+  @RequiredArgsConstructor
+  private static final class VersionedResponse {
+
+    private final long version;
+    private final byte[] response;
+  }
+
+  @RequiredArgsConstructor
+  private static final class ServerResponse {
+
+    private final ServerInfo info;
+    private final byte[] response;
+  }
+
+  @RequiredArgsConstructor
+  private static final class ServersResponse {
+
+    private final List<ServerInfo> infos;
+    private final byte[] response;
+  }
+}
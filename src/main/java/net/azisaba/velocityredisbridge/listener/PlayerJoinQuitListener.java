@@ -1,5 +1,6 @@
 package net.azisaba.velocityredisbridge.listener;
 
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.ResultedEvent.ComponentResult;
 import com.velocitypowered.api.event.Subscribe;
@@ -7,6 +8,7 @@ import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.DisconnectEvent.LoginStatus;
 import com.velocitypowered.api.event.connection.LoginEvent;
 import com.velocitypowered.api.event.player.ServerConnectedEvent;
+import com.velocitypowered.api.proxy.Player;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import net.azisaba.velocityredisbridge.VelocityRedisBridge;
@@ -20,31 +22,54 @@ public class PlayerJoinQuitListener {
   private final VelocityRedisBridge plugin;
   private final String proxyId;
 
+  /**
+   * Registers the player without blocking the event thread. The login resumes once the batch
+   * containing the player has been registered, and is denied if the player is already connected to
+   * another proxy.
+   */
   @Subscribe(order = PostOrder.LAST)
-  public void onJoin(LoginEvent event) {
+  public EventTask onJoin(LoginEvent event) {
     if (!event.getResult().isAllowed()) {
-      return;
+      return null;
     }
 
-    UUID uuid = event.getPlayer().getUniqueId();
-    String userName = event.getPlayer().getUsername();
-    String hostName = event.getPlayer().getRemoteAddress().getAddress().getHostAddress();
-    int port = event.getPlayer().getRemoteAddress().getPort();
-
-    boolean result = plugin.getPlayerInfoHandler()
-        .register(new PlayerInfo(uuid, userName, hostName, port, proxyId, null));
+    Player player = event.getPlayer();
+    UUID uuid = player.getUniqueId();
+    String userName = player.getUsername();
+    String hostName = player.getRemoteAddress().getAddress().getHostAddress();
+    int port = player.getRemoteAddress().getPort();
 
-    if (!result) {
-      event.setResult(
-          ComponentResult.denied(
-              Component.text("あなたは既にサーバーに参加しています！").color(NamedTextColor.RED)));
-    }
+    return EventTask.resumeWhenComplete(
+        plugin
+            .getRegistrationBatcher()
+            .register(new PlayerInfo(uuid, userName, hostName, port, proxyId, null))
+            .handle(
+                (registered, throwable) -> {
+                  if (throwable != null) {
+                    // same as before the registration was asynchronous, the key refresh registers
+                    // the player once redis is reachable again
+                    plugin.getLogger().warning("Failed to register " + userName + " on login");
+                    return null;
+                  }
+                  if (!registered) {
+                    event.setResult(
+                        ComponentResult.denied(
+                            Component.text("あなたは既にサーバーに参加しています！")
+                                .color(NamedTextColor.RED)));
+                  } else if (!player.isActive()) {
+                    // disconnected while the batch was in flight, before onQuit could see the
+                    // record
+                    plugin.getPlayerInfoHandler().unregister(uuid);
+                  }
+                  return null;
+                }));
   }
 
   @Subscribe
   public void onQuit(DisconnectEvent event) {
     if (event.getLoginStatus() != LoginStatus.SUCCESSFUL_LOGIN
-        && event.getLoginStatus() != LoginStatus.PRE_SERVER_JOIN) {
+        && event.getLoginStatus() != LoginStatus.PRE_SERVER_JOIN
+        && event.getLoginStatus() != LoginStatus.CANCELLED_BY_USER_BEFORE_COMPLETE) {
       return;
     }
 
@@ -77,9 +102,18 @@ public class PlayerJoinQuitListener {
                 int port = event.getPlayer().getRemoteAddress().getPort();
 
                 info = new PlayerInfo(uuid, userName, hostName, port, proxyId, serverName);
+              } else {
+                // the cached instance is shared with concurrent readers, so update a copy
+                info =
+                    new PlayerInfo(
+                        info.getUuid(),
+                        info.getUsername(),
+                        info.getHostName(),
+                        info.getPort(),
+                        info.getProxyServer(),
+                        serverName);
               }
 
-              info.setChildServer(serverName);
               plugin.getPlayerInfoHandler().update(info);
             })
         .schedule();
@@ -0,0 +1,82 @@
+package net.azisaba.velocityredisbridge.memory;
+
+import java.util.concurrent.TimeUnit;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodec;
+import net.azisaba.velocityredisbridge.redis.BridgeBackend;
+import net.azisaba.velocityredisbridge.redis.MessagePublisher;
+import net.azisaba.velocityredisbridge.redis.MessageSubscriber;
+import net.azisaba.velocityredisbridge.redis.PlayerInfoStorage;
+import net.azisaba.velocityredisbridge.redis.ProxyRegistry;
+
+/**
+ * Connects one bridge to an {@link InMemoryNetwork}. Create one backend per simulated proxy on the
+ * same network to run a multi-proxy setup in a single process.
+ */
+public class InMemoryBackend implements BridgeBackend {
+
+  private static final int WORKER_THREADS = 2;
+  private static final int QUEUE_CAPACITY = 10000;
+  private static final long RECONNECT_INITIAL_DELAY_MILLIS = 10;
+  private static final long RECONNECT_MAX_DELAY_MILLIS = 1000;
+
+  private final VelocityRedisBridge plugin;
+  private final InMemoryNetwork network;
+  private final PlayerInfoCodec codec;
+  private final InMemoryProxyRegistry proxyRegistry;
+
+  /**
+   * Creates a backend of the specified plugin.
+   *
+   * @param plugin                  the plugin that uses the backend
+   * @param network                 the network shared by the simulated proxies
+   * @param codec                   the codec of the stored records
+   * @param heartbeatTimeoutSeconds the time after which a proxy that stopped refreshing its
+   *                                liveness is considered stopped
+   */
+  public InMemoryBackend(
+      VelocityRedisBridge plugin,
+      InMemoryNetwork network,
+      PlayerInfoCodec codec,
+      long heartbeatTimeoutSeconds) {
+    this.plugin = plugin;
+    this.network = network;
+    this.codec = codec;
+    this.proxyRegistry =
+        new InMemoryProxyRegistry(network, TimeUnit.SECONDS.toNanos(heartbeatTimeoutSeconds));
+  }
+
+  @Override
+  public ProxyRegistry getProxyRegistry() {
+    return proxyRegistry;
+  }
+
+  @Override
+  public PlayerInfoStorage createPlayerInfoStorage(String proxyId) {
+    return new InMemoryPlayerInfoStorage(network, proxyId, codec);
+  }
+
+  @Override
+  public MessagePublisher createMessagePublisher() {
+    return new InMemoryMessagePublisher(network, plugin.getMetrics().getPublishLatency());
+  }
+
+  @Override
+  public MessageSubscriber createMessageSubscriber() {
+    return new InMemoryMessageSubscriber(
+        plugin,
+        network,
+        WORKER_THREADS,
+        QUEUE_CAPACITY,
+        RECONNECT_INITIAL_DELAY_MILLIS,
+        RECONNECT_MAX_DELAY_MILLIS);
+  }
+
+  @Override
+  public String describeConnections() {
+    return "Backend: in-memory";
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,31 @@
+package net.azisaba.velocityredisbridge.memory;
+
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.metrics.LatencyRecorder;
+import net.azisaba.velocityredisbridge.redis.MessagePublisher;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Delivers every message to the subscribers of the network on the calling thread, like
+ * {@link net.azisaba.velocityredisbridge.redis.DirectMessagePublisher} does.
+ */
+@RequiredArgsConstructor
+public class InMemoryMessagePublisher implements MessagePublisher {
+
+  private final InMemoryNetwork network;
+  private final LatencyRecorder publishLatency;
+
+  @Override
+  public CompletableFuture<Long> publish(byte[] channel, byte[] message) {
+    long startNanos = System.nanoTime();
+    try {
+      network.roundTrip();
+      long receivers = network.deliver(SafeEncoder.encode(channel), message);
+      publishLatency.recordSince(startNanos);
+      return CompletableFuture.completedFuture(receivers);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+}
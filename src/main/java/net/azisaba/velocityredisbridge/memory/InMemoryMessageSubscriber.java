@@ -0,0 +1,71 @@
+package net.azisaba.velocityredisbridge.memory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.redis.MessageSubscriber;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/** Receives the messages published on an {@link InMemoryNetwork} while connected to it. */
+public class InMemoryMessageSubscriber extends MessageSubscriber {
+
+  private static final Delivery DISCONNECT = new Delivery(null, null);
+
+  private final InMemoryNetwork network;
+  private final BlockingQueue<Delivery> inbox = new LinkedBlockingQueue<>();
+  private volatile boolean connected;
+
+  public InMemoryMessageSubscriber(
+      VelocityRedisBridge plugin,
+      InMemoryNetwork network,
+      int workerThreads,
+      int queueCapacity,
+      long reconnectInitialDelayMillis,
+      long reconnectMaxDelayMillis) {
+    super(
+        plugin, workerThreads, queueCapacity, reconnectInitialDelayMillis, reconnectMaxDelayMillis);
+    this.network = network;
+  }
+
+  @Override
+  protected void receive() {
+    network.roundTrip();
+    inbox.clear();
+    connected = true;
+    network.attach(this);
+    connected();
+    try {
+      while (running) {
+        Delivery delivery = inbox.take();
+        if (delivery == DISCONNECT) {
+          throw new JedisConnectionException("Disconnected");
+        }
+        dispatch(delivery.channel, delivery.message);
+      }
+    } catch (InterruptedException e) {
+      // close() was called
+    } finally {
+      connected = false;
+      network.detach(this);
+    }
+  }
+
+  boolean offer(String channel, byte[] message) {
+    if (!connected || !handlers.containsKey(channel)) {
+      return false;
+    }
+    return inbox.offer(new Delivery(channel, message));
+  }
+
+  void disconnect() {
+    inbox.offer(DISCONNECT);
+  }
+
+  @RequiredArgsConstructor
+  private static final class Delivery {
+
+    private final String channel;
+    private final byte[] message;
+  }
+}
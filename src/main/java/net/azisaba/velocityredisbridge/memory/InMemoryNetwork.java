@@ -0,0 +1,126 @@
+package net.azisaba.velocityredisbridge.memory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * The state that redis would hold, shared by every {@link InMemoryBackend} created on it, so that
+ * many bridges in one process see each other like proxies connected to the same redis server.
+ *
+ * <p>Every operation waits for the configured latency and then fails with the configured
+ * probability, throwing the same exception as a lost redis connection.
+ */
+public class InMemoryNetwork {
+
+  final Map<UUID, byte[]> records = new ConcurrentHashMap<>();
+  final Map<String, Long> proxyDeadlines = new ConcurrentHashMap<>();
+  private final List<InMemoryMessageSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+  private final Random random;
+  private volatile long latencyNanos;
+  private volatile double failureRate;
+
+  /** Creates a network without latency and failures. */
+  public InMemoryNetwork() {
+    this(new Random());
+  }
+
+  /**
+   * Creates a network whose injected failures are reproducible.
+   *
+   * @param random the source of the injected failures
+   */
+  public InMemoryNetwork(Random random) {
+    this.random = random;
+  }
+
+  /**
+   * Sets the time every operation takes.
+   *
+   * @param latency the latency, 0 to disable
+   * @param unit    the unit of the latency
+   */
+  public void setLatency(long latency, TimeUnit unit) {
+    latencyNanos = unit.toNanos(latency);
+  }
+
+  /**
+   * Sets the probability of every operation failing.
+   *
+   * @param failureRate the probability between 0 and 1
+   */
+  public void setFailureRate(double failureRate) {
+    if (failureRate < 0 || failureRate > 1) {
+      throw new IllegalArgumentException("failureRate must be between 0 and 1");
+    }
+    this.failureRate = failureRate;
+  }
+
+  /**
+   * Drops the connection of every subscriber, as if redis restarted. The messages published until
+   * they reconnect are lost.
+   */
+  public void disconnectSubscribers() {
+    subscribers.forEach(InMemoryMessageSubscriber::disconnect);
+  }
+
+  /**
+   * Deletes every record and message subscription, keeping the latency and failure settings.
+   */
+  public void clear() {
+    records.clear();
+    proxyDeadlines.clear();
+    disconnectSubscribers();
+  }
+
+  /** Waits for the latency and throws if the operation is chosen to fail. */
+  void roundTrip() {
+    long latency = latencyNanos;
+    if (latency > 0) {
+      LockSupport.parkNanos(latency);
+    }
+    double rate = failureRate;
+    if (rate > 0 && random.nextDouble() < rate) {
+      throw new JedisConnectionException("Injected failure");
+    }
+  }
+
+  /**
+   * Delivers the specified message to every connected subscriber that handles the channel.
+   *
+   * @return Returns the number of subscribers that received the message
+   */
+  long deliver(String channel, byte[] message) {
+    long receivers = 0;
+    for (InMemoryMessageSubscriber subscriber : subscribers) {
+      if (subscriber.offer(channel, message)) {
+        receivers++;
+      }
+    }
+    return receivers;
+  }
+
+  /**
+   * Checks if the specified proxy has refreshed its liveness within the timeout, like the existence
+   * of its server id key in redis.
+   */
+  boolean isRunning(String proxyId) {
+    Long deadline = proxyDeadlines.get(proxyId);
+    return deadline != null && deadline - System.nanoTime() >= 0;
+  }
+
+  void attach(InMemoryMessageSubscriber subscriber) {
+    subscribers.add(subscriber);
+  }
+
+  void detach(InMemoryMessageSubscriber subscriber) {
+    subscribers.remove(subscriber);
+  }
+}
@@ -0,0 +1,126 @@
+package net.azisaba.velocityredisbridge.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodec;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.redis.PlayerInfoStorage;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * Keeps the encoded records in the network, so that the codec is exercised as with redis. Records
+ * do not expire; the records of stopped proxies are removed by the heartbeat purge.
+ *
+ * <p>The proxy in a record owns the player, with the same rules as the cluster storage: a player is
+ * only taken over once its owner has stopped, and a proxy only releases or purges the players it
+ * owns.
+ */
+@RequiredArgsConstructor
+public class InMemoryPlayerInfoStorage implements PlayerInfoStorage {
+
+  private final InMemoryNetwork network;
+  private final String proxyId;
+  private final PlayerInfoCodec codec;
+
+  private static String ownerOf(byte[] record) {
+    return PlayerInfoCodecs.decode(record).getProxyServer();
+  }
+
+  @Override
+  public boolean register(PlayerInfo info) {
+    network.roundTrip();
+    return claim(info);
+  }
+
+  @Override
+  public List<Boolean> registerAll(List<PlayerInfo> infos) {
+    network.roundTrip();
+    List<Boolean> results = new ArrayList<>(infos.size());
+    for (PlayerInfo info : infos) {
+      results.add(claim(info));
+    }
+    return results;
+  }
+
+  private boolean claim(PlayerInfo info) {
+    byte[] record = codec.encode(info);
+    while (true) {
+      byte[] existing = network.records.putIfAbsent(info.getUuid(), record);
+      if (existing == null) {
+        return true;
+      }
+      String owner = ownerOf(existing);
+      if (proxyId.equals(owner) || (owner != null && network.isRunning(owner))) {
+        return false;
+      }
+      // the compare-and-set of the take-over, retried if another proxy changed the record
+      if (network.records.replace(info.getUuid(), existing, record)) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public void save(PlayerInfo info) {
+    network.roundTrip();
+    network.records.put(info.getUuid(), codec.encode(info));
+  }
+
+  @Override
+  public void delete(UUID uuid) {
+    network.roundTrip();
+    release(uuid, proxyId);
+  }
+
+  @Override
+  public int loadAll(Consumer<PlayerInfo> consumer) {
+    network.roundTrip();
+    int count = 0;
+    for (byte[] record : network.records.values()) {
+      consumer.accept(PlayerInfoCodecs.decode(record));
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public List<PlayerInfo> loadProxy(String proxyId) {
+    List<PlayerInfo> infos = new ArrayList<>();
+    loadAll(
+        info -> {
+          if (proxyId.equals(info.getProxyServer())) {
+            infos.add(info);
+          }
+        });
+    return infos;
+  }
+
+  @Override
+  public List<UUID> refreshExpire(Collection<UUID> uuids) {
+    network.roundTrip();
+    List<UUID> missing = new ArrayList<>();
+    for (UUID uuid : uuids) {
+      if (!network.records.containsKey(uuid)) {
+        missing.add(uuid);
+      }
+    }
+    return missing;
+  }
+
+  @Override
+  public void purgeProxy(String proxyId, Collection<UUID> uuids) {
+    network.roundTrip();
+    for (UUID uuid : uuids) {
+      release(uuid, proxyId);
+    }
+  }
+
+  private void release(UUID uuid, String owner) {
+    network.records.computeIfPresent(
+        uuid, (key, record) -> owner.equals(ownerOf(record)) ? null : record);
+  }
+}
@@ -0,0 +1,54 @@
+package net.azisaba.velocityredisbridge.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.redis.ProxyRegistry;
+import org.apache.commons.lang3.RandomStringUtils;
+
+/** Tracks the proxies with a deadline per proxy, like the expiring server id keys do in redis. */
+@RequiredArgsConstructor
+public class InMemoryProxyRegistry implements ProxyRegistry {
+
+  private final InMemoryNetwork network;
+  private final long timeoutNanos;
+
+  @Override
+  public String claimProxyId() {
+    network.roundTrip();
+    long deadline = System.nanoTime() + timeoutNanos;
+    String id;
+    do {
+      id = RandomStringUtils.randomAlphanumeric(8);
+    } while (network.proxyDeadlines.putIfAbsent(id, deadline) != null);
+    return id;
+  }
+
+  @Override
+  public boolean refresh(String proxyId) {
+    network.roundTrip();
+    long now = System.nanoTime();
+    Long previous = network.proxyDeadlines.put(proxyId, now + timeoutNanos);
+    return previous != null && previous - now >= 0;
+  }
+
+  @Override
+  public List<String> findStopped(List<String> proxyIds) {
+    network.roundTrip();
+    List<String> stopped = new ArrayList<>();
+    for (String proxyId : proxyIds) {
+      if (!network.isRunning(proxyId)) {
+        stopped.add(proxyId);
+      }
+    }
+    return stopped;
+  }
+
+  @Override
+  public List<String> findDirectReceivers(List<String> proxyIds) {
+    // every proxy in the network runs this version
+    List<String> receivers = new ArrayList<>(proxyIds);
+    receivers.removeAll(findStopped(proxyIds));
+    return receivers;
+  }
+}
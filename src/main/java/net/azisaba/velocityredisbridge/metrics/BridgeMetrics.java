@@ -0,0 +1,55 @@
+package net.azisaba.velocityredisbridge.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/** Latencies of the redis operations and the rates of the received messages. */
+@Getter
+public class BridgeMetrics {
+
+  private final LatencyRecorder registerLatency = new LatencyRecorder();
+  private final LatencyRecorder updateLatency = new LatencyRecorder();
+  private final LatencyRecorder unregisterLatency = new LatencyRecorder();
+  private final LatencyRecorder fetchLatency = new LatencyRecorder();
+  /** From the call of publish until redis has acknowledged the message. */
+  private final LatencyRecorder publishLatency = new LatencyRecorder();
+  /** From the receipt of a message until its handler starts. */
+  private final LatencyRecorder handlerLag = new LatencyRecorder();
+
+  @Getter(AccessLevel.NONE)
+  private final ConcurrentHashMap<String, MessageRate> receivedMessages =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Counts a message received on the specified channel.
+   *
+   * @param channel the name of the channel
+   */
+  public void messageReceived(String channel) {
+    MessageRate rate = receivedMessages.get(channel);
+    if (rate == null) {
+      rate = receivedMessages.computeIfAbsent(channel, c -> new MessageRate());
+    }
+    rate.increment();
+  }
+
+  /**
+   * Gets the received messages by channel.
+   *
+   * @return Returns the received messages by channel
+   */
+  public Map<String, MessageRate> getReceivedMessages() {
+    return Collections.unmodifiableMap(receivedMessages);
+  }
+
+  /** Updates the rates of the received messages. Called at a fixed interval. */
+  public void sample() {
+    long now = System.nanoTime();
+    for (MessageRate rate : receivedMessages.values()) {
+      rate.sample(now);
+    }
+  }
+}
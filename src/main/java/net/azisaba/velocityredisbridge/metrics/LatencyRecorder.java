@@ -0,0 +1,96 @@
+package net.azisaba.velocityredisbridge.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with power-of-two microsecond buckets. Recording does not allocate, so it
+ * can be used on hot paths. Percentiles are reported as the upper bound of their bucket.
+ */
+public class LatencyRecorder {
+
+  // the last bucket holds everything from about 18 minutes
+  private static final int BUCKETS = 32;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records the specified duration.
+   *
+   * @param nanos the duration in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    buckets.incrementAndGet(bucket);
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  /**
+   * Records the time elapsed since the specified {@link System#nanoTime()}.
+   *
+   * @param startNanos the start of the operation
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMeanMicros() {
+    long n = count.sum();
+    return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / n);
+  }
+
+  public long getMaxMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+  }
+
+  /**
+   * Gets the specified percentile of the recorded durations.
+   *
+   * @param percentile the percentile between 0 and 1
+   * @return Returns the upper bound of the bucket holding the percentile in microseconds, or 0 if
+   *     nothing has been recorded
+   */
+  public long getPercentileMicros(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long target = Math.max(1, (long) Math.ceil(total * percentile));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= target) {
+        return 1L << i;
+      }
+    }
+    return 1L << (BUCKETS - 1);
+  }
+
+  /**
+   * Formats the count, mean, p50, p99 and max of the recorded durations.
+   *
+   * @return Returns the formatted summary
+   */
+  public String format() {
+    return "n=" + getCount() + " mean=" + getMeanMicros() + "us p50<=" + getPercentileMicros(0.5)
+        + "us p99<=" + getPercentileMicros(0.99) + "us max=" + getMaxMicros() + "us";
+  }
+}
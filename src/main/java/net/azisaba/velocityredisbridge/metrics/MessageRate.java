@@ -0,0 +1,41 @@
+package net.azisaba.velocityredisbridge.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Number of messages and their rate over the last sampling period. */
+public class MessageRate {
+
+  private final LongAdder count = new LongAdder();
+  private volatile double perSecond;
+
+  // guarded by this
+  private long lastCount;
+  private long lastSampleNanos = System.nanoTime();
+
+  public void increment() {
+    count.increment();
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Gets the rate computed by the last call of {@link #sample(long)}.
+   *
+   * @return Returns the number of messages per second
+   */
+  public double getPerSecond() {
+    return perSecond;
+  }
+
+  synchronized void sample(long nowNanos) {
+    long current = count.sum();
+    long elapsed = nowNanos - lastSampleNanos;
+    if (elapsed > 0) {
+      perSecond = (current - lastCount) * 1_000_000_000.0 / elapsed;
+    }
+    lastCount = current;
+    lastSampleNanos = nowNanos;
+  }
+}
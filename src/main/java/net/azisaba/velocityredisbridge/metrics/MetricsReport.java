@@ -0,0 +1,98 @@
+package net.azisaba.velocityredisbridge.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.redis.BatchingMessagePublisher;
+import net.azisaba.velocityredisbridge.redis.MessageSubscriber;
+import net.azisaba.velocityredisbridge.redis.PlayerInfoHandler;
+import net.azisaba.velocityredisbridge.redis.RedisKeys;
+
+/** Formats the metrics of the plugin for the stats command and the periodic log line. */
+@RequiredArgsConstructor
+public class MetricsReport {
+
+  private static final String CHANNEL_PREFIX = RedisKeys.ALL_KEY_PREFIX.getKey() + ":";
+
+  private final VelocityRedisBridge plugin;
+
+  /**
+   * Formats every metric, one group per line.
+   *
+   * @return Returns the lines of the report
+   */
+  public List<String> lines() {
+    BridgeMetrics metrics = plugin.getMetrics();
+    PlayerInfoHandler playerInfoHandler = plugin.getPlayerInfoHandler();
+    MessageSubscriber subscriber = plugin.getRedisMessageSubscriber();
+
+    List<String> lines = new ArrayList<>();
+    lines.add(
+        "Index: players=" + playerInfoHandler.getAllPlayersCount() + " proxies="
+            + playerInfoHandler.getProxyIds().size() + " gaps=" + playerInfoHandler.getGapCount()
+            + " resyncs=" + playerInfoHandler.getResyncCount() + " purged-proxies="
+            + playerInfoHandler.getPurgedProxyCount());
+    lines.add(plugin.getBackend().describeConnections());
+    lines.add(
+        "register: " + metrics.getRegisterLatency().format() + " queue="
+            + plugin.getRegistrationBatcher().getQueueSize());
+    lines.add("update: " + metrics.getUpdateLatency().format());
+    lines.add("unregister: " + metrics.getUnregisterLatency().format());
+    lines.add("fetch: " + metrics.getFetchLatency().format());
+    lines.add("publish: " + metrics.getPublishLatency().format() + publishQueue());
+    lines.add(
+        "Subscriber: queue=" + subscriber.getQueueSize() + " dropped="
+            + subscriber.getDroppedCount() + " reconnects=" + subscriber.getReconnectCount());
+    lines.add("Handler lag: " + metrics.getHandlerLag().format());
+    lines.add(
+        "API I/O: queue=" + plugin.getIoExecutor().getQueueSize() + " rejected="
+            + plugin.getIoExecutor().getRejectedCount());
+    lines.add(
+        "Pub/sub API: dropped=" + plugin.getVrbPubSubHandler().getDroppedCount()
+            + " pending-requests=" + plugin.getVrbPubSubHandler().getPendingRequestCount());
+    lines.add(
+        "Player commands: targeted=" + plugin.getPlayerCommandRouter().getTargetedCount()
+            + " fallback=" + plugin.getPlayerCommandRouter().getFallbackCount());
+    lines.add("Forwarded to other proxies: " + plugin.getPluginMessageForwarder().getRemoteCount());
+
+    Map<String, MessageRate> rates = new TreeMap<>(metrics.getReceivedMessages());
+    rates.forEach(
+        (channel, rate) ->
+            lines.add(
+                "Received " + shorten(channel) + ": " + rate.getCount() + " ("
+                    + String.format("%.1f", rate.getPerSecond()) + "/s)"));
+    return lines;
+  }
+
+  /**
+   * Formats the metrics that matter most in a single line.
+   *
+   * @return Returns the summary
+   */
+  public String summary() {
+    BridgeMetrics metrics = plugin.getMetrics();
+    MessageSubscriber subscriber = plugin.getRedisMessageSubscriber();
+    return "players=" + plugin.getPlayerInfoHandler().getAllPlayersCount() + " publish-p99<="
+        + metrics.getPublishLatency().getPercentileMicros(0.99) + "us lag-p99<="
+        + metrics.getHandlerLag().getPercentileMicros(0.99) + "us subscriber-queue="
+        + subscriber.getQueueSize() + " dropped=" + subscriber.getDroppedCount() + " reconnects="
+        + subscriber.getReconnectCount() + " " + plugin.getBackend().describeConnections();
+  }
+
+  private String publishQueue() {
+    if (plugin.getMessagePublisher() instanceof BatchingMessagePublisher) {
+      return " queue=" + ((BatchingMessagePublisher) plugin.getMessagePublisher()).getQueueSize();
+    }
+    return "";
+  }
+
+  private static String shorten(String channel) {
+    if (!channel.startsWith(CHANNEL_PREFIX)) {
+      return channel;
+    }
+    return channel.substring(CHANNEL_PREFIX.length());
+  }
+}
@@ -0,0 +1,170 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.metrics.LatencyRecorder;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * Queues messages and publishes them from a dedicated thread, pipelining up to {@code
+ * maxBatchSize} messages per round trip. Messages are published in the order they were queued.
+ *
+ * <p>When the queue is full, the returned future fails immediately instead of blocking the
+ * caller.
+ */
+public class BatchingMessagePublisher implements MessagePublisher {
+
+  private final JedisPool jedisPool;
+  private final Logger logger;
+  private final int maxBatchSize;
+  private final long lingerNanos;
+  private final LatencyRecorder publishLatency;
+
+  private final BlockingQueue<PendingMessage> queue;
+  private final Thread flusher;
+  private volatile boolean running = true;
+
+  public BatchingMessagePublisher(
+      JedisPool jedisPool,
+      Logger logger,
+      int maxBatchSize,
+      long lingerMillis,
+      int queueCapacity,
+      LatencyRecorder publishLatency) {
+    this.jedisPool = jedisPool;
+    this.logger = logger;
+    this.maxBatchSize = maxBatchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.publishLatency = publishLatency;
+
+    this.flusher = new Thread(this::runFlusher, "VelocityRedisBridge Publisher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  @Override
+  public CompletableFuture<Long> publish(byte[] channel, byte[] message) {
+    PendingMessage pending =
+        new PendingMessage(channel, message, System.nanoTime(), new CompletableFuture<>());
+    if (!running) {
+      pending.future.completeExceptionally(new RejectedExecutionException("Publisher is closed"));
+    } else if (!queue.offer(pending)) {
+      pending.future.completeExceptionally(
+          new RejectedExecutionException("Publish queue is full"));
+    }
+    return pending.future;
+  }
+
+  /**
+   * Gets the number of messages waiting to be published.
+   *
+   * @return Returns the number of queued messages
+   */
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    flusher.interrupt();
+    try {
+      flusher.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    // queued by a publish that passed the running check just before the flusher exited
+    List<PendingMessage> leftover = new ArrayList<>();
+    queue.drainTo(leftover);
+    for (PendingMessage pending : leftover) {
+      pending.future.completeExceptionally(new RejectedExecutionException("Publisher is closed"));
+    }
+  }
+
+  private void runFlusher() {
+    List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingMessage first = running ? queue.take() : queue.poll();
+        if (first == null) {
+          break;
+        }
+        batch.add(first);
+        fillBatch(batch);
+      } catch (InterruptedException e) {
+        // close() was called, publish what is left
+        queue.drainTo(batch, maxBatchSize - batch.size());
+      }
+
+      if (!batch.isEmpty()) {
+        flush(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void fillBatch(List<PendingMessage> batch) throws InterruptedException {
+    queue.drainTo(batch, maxBatchSize - batch.size());
+    if (lingerNanos <= 0) {
+      return;
+    }
+
+    long deadline = System.nanoTime() + lingerNanos;
+    while (batch.size() < maxBatchSize) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return;
+      }
+      PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+      queue.drainTo(batch, maxBatchSize - batch.size());
+    }
+  }
+
+  private void flush(List<PendingMessage> batch) {
+    List<Response<Long>> responses = new ArrayList<>(batch.size());
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (PendingMessage pending : batch) {
+        responses.add(pipeline.publish(pending.channel, pending.message));
+      }
+      pipeline.sync();
+    } catch (RuntimeException e) {
+      logger.warning("Failed to publish " + batch.size() + " message(s): " + e.getMessage());
+      for (PendingMessage pending : batch) {
+        pending.future.completeExceptionally(e);
+      }
+      return;
+    }
+
+    for (int i = 0; i < batch.size(); i++) {
+      PendingMessage pending = batch.get(i);
+      publishLatency.recordSince(pending.queuedNanos);
+      pending.future.complete(responses.get(i).get());
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static final class PendingMessage {
+
+    private final byte[] channel;
+    private final byte[] message;
+    private final long queuedNanos;
+    private final CompletableFuture<Long> future;
+  }
+}
@@ -0,0 +1,33 @@
+package net.azisaba.velocityredisbridge.redis;
+
+/**
+ * Creates the storage and transport used by the bridge. {@link JedisBackend} talks to a redis
+ * server and {@link JedisClusterBackend} to a redis cluster, while the in-memory backend lets many
+ * bridges run in one process for tests and simulations.
+ */
+public interface BridgeBackend {
+
+  ProxyRegistry getProxyRegistry();
+
+  /**
+   * Creates the storage of the players of the specified proxy.
+   *
+   * @param proxyId the id of this proxy
+   * @return Returns the storage
+   */
+  PlayerInfoStorage createPlayerInfoStorage(String proxyId);
+
+  MessagePublisher createMessagePublisher();
+
+  MessageSubscriber createMessageSubscriber();
+
+  /**
+   * Describes the state of the connections for the stats command.
+   *
+   * @return Returns a single line description
+   */
+  String describeConnections();
+
+  /** Releases the connections. */
+  void close();
+}
@@ -0,0 +1,26 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.function.Consumer;
+import redis.clients.jedis.util.SafeEncoder;
+
+/** Handles the messages received on a redis channel. */
+@FunctionalInterface
+public interface ChannelHandler {
+
+  /**
+   * Handles a received message.
+   *
+   * @param message the raw message
+   */
+  void handle(byte[] message);
+
+  /**
+   * Creates a handler for channels whose messages are UTF-8 text.
+   *
+   * @param consumer the function that handles the decoded message
+   * @return Returns the handler
+   */
+  static ChannelHandler text(Consumer<String> consumer) {
+    return message -> consumer.accept(SafeEncoder.encode(message));
+  }
+}
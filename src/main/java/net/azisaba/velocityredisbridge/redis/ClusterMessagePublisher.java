@@ -0,0 +1,25 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.metrics.LatencyRecorder;
+import redis.clients.jedis.JedisCluster;
+
+/**
+ * Publishes every message on the calling thread through a redis cluster, which delivers it to the
+ * subscribers on every node. Errors are thrown to the caller.
+ */
+@RequiredArgsConstructor
+public class ClusterMessagePublisher implements MessagePublisher {
+
+  private final JedisCluster jedisCluster;
+  private final LatencyRecorder publishLatency;
+
+  @Override
+  public CompletableFuture<Long> publish(byte[] channel, byte[] message) {
+    long start = System.nanoTime();
+    long receivers = jedisCluster.publish(channel, message);
+    publishLatency.recordSince(start);
+    return CompletableFuture.completedFuture(receivers);
+  }
+}
@@ -0,0 +1,311 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodec;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import redis.clients.jedis.ClusterPipeline;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Stores the players of each proxy on a redis cluster, in one hash {@code
+ * velocity-redis-bridge:proxy-players:{<proxy>}}. The proxy id is the hash tag, so the records of a
+ * proxy share a slot with its server id key, and writing, refreshing or purging them is a
+ * single-slot operation.
+ *
+ * <p>The owner of each player is a separate key {@code velocity-redis-bridge:player-owner:<uuid>},
+ * so that logins are spread over every node instead of all going through one owner hash. Claiming
+ * a player and writing its record touch two slots and cannot be one script, so the owner may not
+ * have written the record yet. A player is therefore only taken over, with a compare-and-set, once
+ * the server id key of its owner is gone, and a claim whose record could not be written is
+ * released again. Owner keys expire with the records and are refreshed with them, so the owners of
+ * a proxy that crashed unnoticed do not stay behind.
+ */
+@RequiredArgsConstructor
+public class ClusterPlayerInfoStorage implements PlayerInfoStorage {
+
+  // KEYS: owner key
+  // ARGV: proxy id, expire seconds
+  // returns the proxy that owns the player, or nil once this proxy owns it
+  private static final String CLAIM_SCRIPT =
+      "local owner = redis.call('GET', KEYS[1]) "
+          + "if owner and owner ~= ARGV[1] then return owner end "
+          + "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+          + "return false";
+
+  // KEYS: owner key
+  // ARGV: proxy id, expected owner, expire seconds
+  private static final String TAKE_OVER_SCRIPT =
+      "if redis.call('GET', KEYS[1]) ~= ARGV[2] then return 0 end "
+          + "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3]) "
+          + "return 1";
+
+  // KEYS: owner key
+  // ARGV: proxy id
+  private static final String RELEASE_SCRIPT =
+      "if redis.call('GET', KEYS[1]) == ARGV[1] then redis.call('DEL', KEYS[1]) end "
+          + "return 1";
+
+  private final JedisCluster jedisCluster;
+  private final Logger logger;
+  private final String proxyId;
+  private final PlayerInfoCodec codec;
+  private final long expireSeconds;
+
+  static String proxyPlayersKey(String proxyId) {
+    return RedisKeys.PROXY_PLAYERS_PREFIX + ":{" + proxyId + "}";
+  }
+
+  private static String ownerKey(UUID uuid) {
+    return RedisKeys.PLAYER_OWNER_KEY + ":" + uuid;
+  }
+
+  @Override
+  public boolean register(PlayerInfo info) {
+    return registerAll(Collections.singletonList(info)).get(0);
+  }
+
+  @Override
+  public List<Boolean> registerAll(List<PlayerInfo> infos) {
+    List<Response<Object>> claims = new ArrayList<>(infos.size());
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      for (PlayerInfo info : infos) {
+        claims.add(
+            pipeline.eval(
+                CLAIM_SCRIPT,
+                Collections.singletonList(ownerKey(info.getUuid())),
+                Arrays.asList(proxyId, Long.toString(expireSeconds))));
+      }
+      pipeline.sync();
+    }
+
+    List<Boolean> results = new ArrayList<>(infos.size());
+    List<PlayerInfo> claimed = new ArrayList<>(infos.size());
+    for (int i = 0; i < infos.size(); i++) {
+      PlayerInfo info = infos.get(i);
+      Object owner = claims.get(i).get();
+      boolean success = owner == null || takeOver(info.getUuid(), owner.toString());
+      results.add(success);
+      if (success) {
+        claimed.add(info);
+      }
+    }
+
+    if (!claimed.isEmpty()) {
+      try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+        writeRecords(pipeline, claimed);
+        pipeline.sync();
+      } catch (RuntimeException e) {
+        release(claimed);
+        throw e;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Takes over the specified player if its owner has stopped. A running owner may still be about
+   * to write the record, so a missing record is not enough.
+   *
+   * @param uuid  the UUID of the player
+   * @param owner the proxy that owns the player
+   * @return Returns true if this proxy owns the player now
+   */
+  private boolean takeOver(UUID uuid, String owner) {
+    if (jedisCluster.exists(ClusterProxyRegistry.serverIdKey(owner))) {
+      return false;
+    }
+    Object result =
+        jedisCluster.eval(
+            TAKE_OVER_SCRIPT,
+            Collections.singletonList(ownerKey(uuid)),
+            Arrays.asList(proxyId, owner, Long.toString(expireSeconds)));
+    return Long.valueOf(1L).equals(result);
+  }
+
+  private void release(List<PlayerInfo> infos) {
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      for (PlayerInfo info : infos) {
+        pipeline.eval(
+            RELEASE_SCRIPT,
+            Collections.singletonList(ownerKey(info.getUuid())),
+            Collections.singletonList(proxyId));
+      }
+      pipeline.sync();
+    } catch (RuntimeException e) {
+      logger.warning("Failed to release " + infos.size() + " unregistered players: " + e);
+    }
+  }
+
+  private void writeRecords(ClusterPipeline pipeline, List<PlayerInfo> infos) {
+    Map<byte[], byte[]> records = new HashMap<>();
+    for (PlayerInfo info : infos) {
+      records.put(SafeEncoder.encode(info.getUuid().toString()), codec.encode(info));
+    }
+    // both go to the slot of this proxy
+    byte[] key = SafeEncoder.encode(proxyPlayersKey(proxyId));
+    pipeline.hset(key, records);
+    pipeline.expire(key, expireSeconds);
+  }
+
+  @Override
+  public void save(PlayerInfo info) {
+    Object owner =
+        jedisCluster.eval(
+            CLAIM_SCRIPT,
+            Collections.singletonList(ownerKey(info.getUuid())),
+            Arrays.asList(proxyId, Long.toString(expireSeconds)));
+    if (owner != null) {
+      // a peer took the player over, its record is the current one
+      logger.fine("Skipped saving " + info.getUuid() + ", it is owned by " + owner);
+      return;
+    }
+
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      writeRecords(pipeline, Collections.singletonList(info));
+      pipeline.sync();
+    }
+  }
+
+  @Override
+  public void delete(UUID uuid) {
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      pipeline.hdel(proxyPlayersKey(proxyId), uuid.toString());
+      pipeline.eval(
+          RELEASE_SCRIPT,
+          Collections.singletonList(ownerKey(uuid)),
+          Collections.singletonList(proxyId));
+      pipeline.sync();
+    }
+  }
+
+  @Override
+  public int loadAll(Consumer<PlayerInfo> consumer) {
+    List<String> proxyIds = new ArrayList<>(jedisCluster.smembers(RedisKeys.PROXIES_KEY.getKey()));
+    List<Response<Map<byte[], byte[]>>> responses = new ArrayList<>(proxyIds.size());
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      for (String id : proxyIds) {
+        responses.add(pipeline.hgetAll(SafeEncoder.encode(proxyPlayersKey(id))));
+      }
+      pipeline.sync();
+    }
+
+    int recordCount = 0;
+    List<String> empty = new ArrayList<>();
+    for (int i = 0; i < proxyIds.size(); i++) {
+      Map<byte[], byte[]> records = responses.get(i).get();
+      if (records.isEmpty()) {
+        empty.add(proxyIds.get(i));
+        continue;
+      }
+
+      recordCount += records.size();
+      parseRecords(proxyIds.get(i), records, consumer);
+    }
+
+    forgetStopped(empty);
+    return recordCount;
+  }
+
+  /**
+   * Removes the proxies without players whose server id key has expired from the proxies set, so
+   * that proxies that stopped without players are not read forever.
+   */
+  private void forgetStopped(List<String> proxyIds) {
+    if (proxyIds.isEmpty()) {
+      return;
+    }
+
+    List<Response<Boolean>> alive = new ArrayList<>(proxyIds.size());
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      for (String id : proxyIds) {
+        alive.add(pipeline.exists(ClusterProxyRegistry.serverIdKey(id)));
+      }
+      pipeline.sync();
+    }
+
+    List<String> stopped = new ArrayList<>();
+    for (int i = 0; i < proxyIds.size(); i++) {
+      if (!alive.get(i).get()) {
+        stopped.add(proxyIds.get(i));
+      }
+    }
+    if (!stopped.isEmpty()) {
+      jedisCluster.srem(RedisKeys.PROXIES_KEY.getKey(), stopped.toArray(new String[0]));
+    }
+  }
+
+  @Override
+  public List<PlayerInfo> loadProxy(String proxyId) {
+    Map<byte[], byte[]> records =
+        jedisCluster.hgetAll(SafeEncoder.encode(proxyPlayersKey(proxyId)));
+    List<PlayerInfo> infos = new ArrayList<>(records.size());
+    parseRecords(proxyId, records, infos::add);
+    return infos;
+  }
+
+  private void parseRecords(
+      String proxyId, Map<byte[], byte[]> records, Consumer<PlayerInfo> consumer) {
+    String key = proxyPlayersKey(proxyId);
+    for (Map.Entry<byte[], byte[]> entry : records.entrySet()) {
+      PlayerInfo info =
+          KeyPlayerInfoStorage.parse(
+              logger, entry.getValue(), SafeEncoder.encode(entry.getKey()), key);
+      if (info != null) {
+        consumer.accept(info);
+      }
+    }
+  }
+
+  @Override
+  public List<UUID> refreshExpire(Collection<UUID> uuids) {
+    List<UUID> order = new ArrayList<>(uuids);
+    Response<Long> records;
+    List<Response<Long>> owners = new ArrayList<>(order.size());
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      records = pipeline.expire(proxyPlayersKey(proxyId), expireSeconds);
+      for (UUID uuid : order) {
+        owners.add(pipeline.expire(ownerKey(uuid), expireSeconds));
+      }
+      pipeline.sync();
+    }
+    if (records.get() == 0) {
+      return order;
+    }
+
+    // players whose owner key expired are claimed again
+    List<UUID> missing = new ArrayList<>();
+    for (int i = 0; i < order.size(); i++) {
+      if (owners.get(i).get() == 0) {
+        missing.add(order.get(i));
+      }
+    }
+    return missing;
+  }
+
+  @Override
+  public void purgeProxy(String proxyId, Collection<UUID> uuids) {
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      pipeline.del(proxyPlayersKey(proxyId));
+      for (UUID uuid : uuids) {
+        pipeline.eval(
+            RELEASE_SCRIPT,
+            Collections.singletonList(ownerKey(uuid)),
+            Collections.singletonList(proxyId));
+      }
+      pipeline.srem(RedisKeys.PROXIES_KEY.getKey(), proxyId);
+      pipeline.sync();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.RandomStringUtils;
+import redis.clients.jedis.ClusterPipeline;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * Tracks the proxies on a redis cluster with one server id key per proxy that expires after the
+ * timeout. The key is hash tagged with the proxy id, so it lives in the same slot as the players
+ * of the proxy. Every claimed id is also added to the proxies set, which replaces SCAN for finding
+ * the proxies since SCAN would have to visit every node.
+ */
+@RequiredArgsConstructor
+public class ClusterProxyRegistry implements ProxyRegistry {
+
+  private final JedisCluster jedisCluster;
+  private final long timeoutSeconds;
+
+  static String serverIdKey(String proxyId) {
+    return RedisKeys.SERVER_ID_PREFIX + ":{" + proxyId + "}";
+  }
+
+  @Override
+  public String claimProxyId() {
+    while (true) {
+      String id = RandomStringUtils.randomAlphanumeric(8);
+      SetParams absent = SetParams.setParams().nx().ex(timeoutSeconds);
+      String reply = jedisCluster.set(serverIdKey(id), DIRECT_CHANNELS_VALUE, absent);
+      if (reply != null) {
+        jedisCluster.sadd(RedisKeys.PROXIES_KEY.getKey(), id);
+        return id;
+      }
+    }
+  }
+
+  @Override
+  public boolean refresh(String proxyId) {
+    // XX fails if the key has expired, which means a peer may have given up on us
+    String key = serverIdKey(proxyId);
+    SetParams existing = SetParams.setParams().ex(timeoutSeconds).xx();
+    if (jedisCluster.set(key, DIRECT_CHANNELS_VALUE, existing) != null) {
+      return true;
+    }
+    jedisCluster.set(key, DIRECT_CHANNELS_VALUE, SetParams.setParams().ex(timeoutSeconds));
+    // so that the storage finds our players again after a peer removed us from the set
+    jedisCluster.sadd(RedisKeys.PROXIES_KEY.getKey(), proxyId);
+    return false;
+  }
+
+  @Override
+  public List<String> findStopped(List<String> proxyIds) {
+    List<Response<Boolean>> responses = new ArrayList<>(proxyIds.size());
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      for (String proxyId : proxyIds) {
+        responses.add(pipeline.exists(serverIdKey(proxyId)));
+      }
+      pipeline.sync();
+    }
+
+    List<String> stopped = new ArrayList<>();
+    for (int i = 0; i < proxyIds.size(); i++) {
+      if (!responses.get(i).get()) {
+        stopped.add(proxyIds.get(i));
+      }
+    }
+    return stopped;
+  }
+
+  @Override
+  public List<String> findDirectReceivers(List<String> proxyIds) {
+    List<Response<String>> responses = new ArrayList<>(proxyIds.size());
+    try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+      for (String proxyId : proxyIds) {
+        responses.add(pipeline.get(serverIdKey(proxyId)));
+      }
+      pipeline.sync();
+    }
+
+    List<String> receivers = new ArrayList<>();
+    for (int i = 0; i < proxyIds.size(); i++) {
+      if (DIRECT_CHANNELS_VALUE.equals(responses.get(i).get())) {
+        receivers.add(proxyIds.get(i));
+      }
+    }
+    return receivers;
+  }
+}
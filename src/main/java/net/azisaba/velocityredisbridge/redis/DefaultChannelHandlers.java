@@ -0,0 +1,151 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import java.util.Optional;
+import java.util.function.Predicate;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.util.PubSubMessageData;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+
+/** Handlers of the channels used by VelocityRedisBridge itself. */
+@RequiredArgsConstructor
+public class DefaultChannelHandlers {
+
+  private final VelocityRedisBridge plugin;
+  private final Gson gson = new Gson();
+
+  public void registerTo(MessageSubscriber subscriber) {
+    registerPlayerCommand(subscriber, RedisKeys.SEND_SERVER_REQUEST, this::handleSendServerRequest);
+    subscriber.registerHandler(
+        RedisKeys.SEND_MESSAGE_TO_ALL, ChannelHandler.text(this::handleSendMessageToAll));
+    registerPlayerCommand(
+        subscriber, RedisKeys.SEND_MESSAGE_TO_PLAYER, this::handleSendMessageToPlayer);
+    subscriber.registerHandler(
+        RedisKeys.SEND_RAW_MESSAGE_TO_ALL, ChannelHandler.text(this::handleSendRawMessageToAll));
+    registerPlayerCommand(
+        subscriber, RedisKeys.SEND_RAW_MESSAGE_TO_PLAYER, this::handleSendRawMessageToPlayer);
+    registerPlayerCommand(subscriber, RedisKeys.KICK_PLAYER, this::handleKickPlayer);
+    // binary payload, must not be decoded as a string
+    subscriber.registerHandler(
+        RedisKeys.INFO_UPDATE_NOTIFY,
+        message -> plugin.getPlayerInfoHandler().receivedUpdateNotify(message));
+    subscriber.registerHandler(RedisKeys.PUB_SUB_KEY, ChannelHandler.text(this::handlePubSub));
+    subscriber.registerHandler(
+        RedisKeys.PUB_SUB_REQUEST_KEY, ChannelHandler.text(this::handlePubSubRequest));
+    subscriber.registerHandler(
+        VRBPubSubHandler.replyChannel(plugin.getProxyId()),
+        ChannelHandler.text(this::handlePubSubReply));
+    // binary payload, relayed to the child servers as it is
+    subscriber.registerHandler(
+        PluginMessageForwarder.proxyChannel(plugin.getProxyId()),
+        message -> plugin.getPluginMessageForwarder().received(message));
+  }
+
+  /**
+   * Registers a command directed at a single player on its broadcast channel and on the channel of
+   * this proxy. Commands received on the latter for a player who is not here are broadcast again.
+   */
+  private void registerPlayerCommand(
+      MessageSubscriber subscriber, RedisKeys channel, Predicate<String> handler) {
+    subscriber.registerHandler(channel, ChannelHandler.text(handler::test));
+    subscriber.registerHandler(
+        PlayerCommandRouter.proxyChannel(channel, plugin.getProxyId()),
+        ChannelHandler.text(
+            message -> {
+              if (!handler.test(message)) {
+                plugin.getPlayerCommandRouter().redirect(channel, message);
+              }
+            }));
+  }
+
+  private boolean handleSendServerRequest(String message) {
+    int separator = message.indexOf(':');
+    String playerName = message.substring(0, separator);
+    String serverName = message.substring(separator + 1);
+
+    Optional<Player> player = plugin.getProxy().getPlayer(playerName);
+    if (!player.isPresent()) {
+      return false;
+    }
+    Optional<RegisteredServer> server = plugin.getProxy().getServer(serverName);
+    if (!server.isPresent()) {
+      return true;
+    }
+
+    player.get().createConnectionRequest(server.get()).connect();
+    return true;
+  }
+
+  private void handleSendMessageToAll(String message) {
+    plugin
+        .getProxy()
+        .getAllPlayers()
+        .forEach(player -> player.sendMessage(Component.text(message)));
+  }
+
+  private boolean handleSendMessageToPlayer(String message) {
+    int separator = message.indexOf(':');
+    String playerName = message.substring(0, separator);
+    String messageText = message.substring(separator + 1);
+
+    Optional<Player> player = plugin.getProxy().getPlayer(playerName);
+    player.ifPresent(p -> p.sendMessage(Component.text(messageText)));
+    return player.isPresent();
+  }
+
+  private void handleSendRawMessageToAll(String message) {
+    Component component = GsonComponentSerializer.gson().deserialize(message);
+    plugin.getProxy().getAllPlayers().forEach(player -> player.sendMessage(component));
+  }
+
+  private boolean handleSendRawMessageToPlayer(String message) {
+    int separator = message.indexOf(':');
+    String playerName = message.substring(0, separator);
+    String messageText = message.substring(separator + 1);
+
+    Optional<Player> player = plugin.getProxy().getPlayer(playerName);
+    player.ifPresent(p -> p.sendMessage(GsonComponentSerializer.gson().deserialize(messageText)));
+    return player.isPresent();
+  }
+
+  private boolean handleKickPlayer(String message) {
+    int separator = message.indexOf(':');
+    String playerName = message.substring(0, separator);
+    String reason = message.substring(separator + 1);
+
+    Optional<Player> player = plugin.getProxy().getPlayer(playerName);
+    player.ifPresent(p -> p.disconnect(Component.text(reason)));
+    return player.isPresent();
+  }
+
+  private void handlePubSub(String message) {
+    try {
+      plugin.getVrbPubSubHandler().execute(gson.fromJson(message, PubSubMessageData.class));
+    } catch (JsonSyntaxException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private void handlePubSubRequest(String message) {
+    try {
+      plugin
+          .getVrbPubSubHandler()
+          .executeRequest(gson.fromJson(message, PubSubMessageData.class));
+    } catch (JsonSyntaxException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private void handlePubSubReply(String message) {
+    try {
+      plugin.getVrbPubSubHandler().receivedReply(gson.fromJson(message, PubSubMessageData.class));
+    } catch (JsonSyntaxException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.metrics.LatencyRecorder;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Publishes every message on the calling thread with its own round trip. Errors are thrown to the
+ * caller.
+ */
+@RequiredArgsConstructor
+public class DirectMessagePublisher implements MessagePublisher {
+
+  private final JedisPool jedisPool;
+  private final LatencyRecorder publishLatency;
+
+  @Override
+  public CompletableFuture<Long> publish(byte[] channel, byte[] message) {
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      long receivers = jedis.publish(channel, message);
+      publishLatency.recordSince(start);
+      return CompletableFuture.completedFuture(receivers);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> publishAll(byte[] channel, List<byte[]> messages) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (byte[] message : messages) {
+        pipeline.publish(channel, message);
+      }
+      pipeline.sync();
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+}
@@ -0,0 +1,356 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodec;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Stores the players of each proxy in one hash {@code velocity-redis-bridge:proxy-players:<proxy>}
+ * keyed by UUID. Only the hash carries an expiration, so refreshing it is a single command per
+ * proxy. A shared owner hash maps each UUID to the proxy that registered it, so that a player
+ * cannot join twice.
+ *
+ * <p>An owner entry only counts while the hash of its proxy still holds the player. That check
+ * reads a key named by the entry, so it runs from Java between two scripts that only touch
+ * declared keys. Entries left behind by crashed proxies are pruned by {@link #loadAll(Consumer)}.
+ *
+ * <p>Records written by proxies that still use {@link PlayerInfoStorageLayout#KEY} are read and
+ * respected as well, which allows switching the layout with a rolling restart. The protection
+ * against joining twice only works in one direction during the switch: this layout refuses players
+ * registered by a key-layout proxy, but a key-layout proxy does not see the players registered
+ * here.
+ */
+public class HashPlayerInfoStorage implements PlayerInfoStorage {
+
+  private static final int SCAN_BATCH_SIZE = 100;
+  private static final int PROXY_PLAYERS_PREFIX_LENGTH =
+      RedisKeys.PROXY_PLAYERS_PREFIX.getKey().length() + 1;
+
+  // KEYS: legacy player key, owner hash, own proxy hash
+  // ARGV: uuid, proxy id, data, expire seconds, stale owner or ""
+  // returns 1 once registered, 0 if already registered, or the proxy that may own the player
+  private static final String REGISTER_SCRIPT =
+      "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+          + "local owner = redis.call('HGET', KEYS[2], ARGV[1]) "
+          + "if owner == ARGV[2] then "
+          + "if redis.call('HEXISTS', KEYS[3], ARGV[1]) == 1 then return 0 end "
+          + "elseif owner and owner ~= ARGV[5] then return owner end "
+          + "redis.call('HSET', KEYS[2], ARGV[1], ARGV[2]) "
+          + "redis.call('HSET', KEYS[3], ARGV[1], ARGV[3]) "
+          + "redis.call('EXPIRE', KEYS[3], ARGV[4]) "
+          + "return 1";
+  private static final byte[] REGISTER_SCRIPT_BYTES = SafeEncoder.encode(REGISTER_SCRIPT);
+
+  // KEYS: owner hash, own proxy hash
+  // ARGV: uuid, proxy id
+  private static final String DELETE_SCRIPT =
+      "redis.call('HDEL', KEYS[2], ARGV[1]) "
+          + "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then "
+          + "redis.call('HDEL', KEYS[1], ARGV[1]) end "
+          + "return 1";
+
+  // KEYS: owner hash, proxy hash of the stopped proxy
+  // ARGV: stopped proxy id, uuids...
+  private static final String PURGE_SCRIPT =
+      "local deleted = redis.call('DEL', KEYS[2]) "
+          + "for i = 2, #ARGV do "
+          + "if redis.call('HGET', KEYS[1], ARGV[i]) == ARGV[1] then "
+          + "redis.call('HDEL', KEYS[1], ARGV[i]) end end "
+          + "return deleted";
+
+  // KEYS: owner hash, proxy hash of the owner
+  // ARGV: uuid, owner
+  private static final String PRUNE_SCRIPT =
+      "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] "
+          + "and redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then "
+          + "redis.call('HDEL', KEYS[1], ARGV[1]) end "
+          + "return 1";
+  private static final byte[] PRUNE_SCRIPT_BYTES = SafeEncoder.encode(PRUNE_SCRIPT);
+
+  private final JedisPool jedisPool;
+  private final String proxyId;
+  private final PlayerInfoCodec codec;
+  private final long expireSeconds;
+
+  private final KeyPlayerInfoStorage legacyStorage;
+
+  public HashPlayerInfoStorage(
+      JedisPool jedisPool,
+      Logger logger,
+      String proxyId,
+      PlayerInfoCodec codec,
+      long expireSeconds) {
+    this.jedisPool = jedisPool;
+    this.proxyId = proxyId;
+    this.codec = codec;
+    this.expireSeconds = expireSeconds;
+    this.legacyStorage = new KeyPlayerInfoStorage(jedisPool, logger, codec, expireSeconds);
+  }
+
+  static String proxyPlayersKey(String proxyId) {
+    return RedisKeys.PROXY_PLAYERS_PREFIX + ":" + proxyId;
+  }
+
+  @Override
+  public boolean register(PlayerInfo info) {
+    return registerAll(Collections.singletonList(info)).get(0);
+  }
+
+  @Override
+  public List<Boolean> registerAll(List<PlayerInfo> infos) {
+    List<Object> replies = runRegister(infos, Collections.nCopies(infos.size(), ""));
+
+    // players owned by another proxy, taken over only if its hash no longer holds them
+    List<Integer> contested = new ArrayList<>();
+    List<Response<Boolean>> held = new ArrayList<>();
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (int i = 0; i < replies.size(); i++) {
+        if (replies.get(i) instanceof byte[]) {
+          String owner = SafeEncoder.encode((byte[]) replies.get(i));
+          contested.add(i);
+          held.add(pipeline.hexists(proxyPlayersKey(owner), infos.get(i).getUuid().toString()));
+        }
+      }
+      pipeline.sync();
+    }
+
+    List<PlayerInfo> stale = new ArrayList<>();
+    List<String> staleOwners = new ArrayList<>();
+    List<Integer> staleIndexes = new ArrayList<>();
+    for (int i = 0; i < contested.size(); i++) {
+      int index = contested.get(i);
+      if (!held.get(i).get()) {
+        stale.add(infos.get(index));
+        staleOwners.add(SafeEncoder.encode((byte[]) replies.get(index)));
+        staleIndexes.add(index);
+      }
+    }
+    if (!stale.isEmpty()) {
+      // the owner is compared again by the script, so a concurrent claim wins over the take over
+      List<Object> takeOvers = runRegister(stale, staleOwners);
+      for (int i = 0; i < stale.size(); i++) {
+        replies.set(staleIndexes.get(i), takeOvers.get(i));
+      }
+    }
+
+    List<Boolean> results = new ArrayList<>(replies.size());
+    for (Object reply : replies) {
+      results.add(Long.valueOf(1L).equals(reply));
+    }
+    return results;
+  }
+
+  private List<Object> runRegister(List<PlayerInfo> infos, List<String> staleOwners) {
+    List<Response<Object>> responses = new ArrayList<>(infos.size());
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (int i = 0; i < infos.size(); i++) {
+        PlayerInfo info = infos.get(i);
+        responses.add(
+            pipeline.eval(
+                REGISTER_SCRIPT_BYTES, registerKeys(info), registerArgs(info, staleOwners.get(i))));
+      }
+      pipeline.sync();
+    }
+
+    List<Object> replies = new ArrayList<>(responses.size());
+    for (Response<Object> response : responses) {
+      replies.add(response.get());
+    }
+    return replies;
+  }
+
+  private List<byte[]> registerKeys(PlayerInfo info) {
+    return Arrays.asList(
+        SafeEncoder.encode(KeyPlayerInfoStorage.playerKey(info.getUuid())),
+        SafeEncoder.encode(RedisKeys.PLAYER_OWNER_KEY.getKey()),
+        SafeEncoder.encode(proxyPlayersKey(proxyId)));
+  }
+
+  private List<byte[]> registerArgs(PlayerInfo info, String staleOwner) {
+    return Arrays.asList(
+        SafeEncoder.encode(info.getUuid().toString()),
+        SafeEncoder.encode(proxyId),
+        codec.encode(info),
+        SafeEncoder.encode(String.valueOf(expireSeconds)),
+        SafeEncoder.encode(staleOwner));
+  }
+
+  @Override
+  public void save(PlayerInfo info) {
+    String uuidStr = info.getUuid().toString();
+    byte[] proxyKey = SafeEncoder.encode(proxyPlayersKey(proxyId));
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      pipeline.hset(RedisKeys.PLAYER_OWNER_KEY.getKey(), uuidStr, proxyId);
+      pipeline.hset(proxyKey, SafeEncoder.encode(uuidStr), codec.encode(info));
+      pipeline.expire(proxyKey, expireSeconds);
+      pipeline.sync();
+    }
+  }
+
+  @Override
+  public void delete(UUID uuid) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.eval(
+          DELETE_SCRIPT,
+          Arrays.asList(RedisKeys.PLAYER_OWNER_KEY.getKey(), proxyPlayersKey(proxyId)),
+          Arrays.asList(uuid.toString(), proxyId));
+    }
+  }
+
+  @Override
+  public int loadAll(Consumer<PlayerInfo> consumer) {
+    int recordCount = 0;
+    // uuid -> proxy of every record that was read
+    Map<String, String> holders = new HashMap<>();
+    try (Jedis jedis = jedisPool.getResource()) {
+      ScanParams params =
+          new ScanParams().match(RedisKeys.PROXY_PLAYERS_PREFIX + ":*").count(SCAN_BATCH_SIZE);
+      String cursor = ScanParams.SCAN_POINTER_START;
+      do {
+        ScanResult<String> result = jedis.scan(cursor, params);
+        cursor = result.getCursor();
+
+        List<String> keys = result.getResult();
+        if (keys.isEmpty()) {
+          continue;
+        }
+
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Map<byte[], byte[]>>> responses = new ArrayList<>(keys.size());
+        for (String key : keys) {
+          responses.add(pipeline.hgetAll(SafeEncoder.encode(key)));
+        }
+        pipeline.sync();
+
+        for (int i = 0; i < keys.size(); i++) {
+          String holder = keys.get(i).substring(PROXY_PLAYERS_PREFIX_LENGTH);
+          for (Map.Entry<byte[], byte[]> entry : responses.get(i).get().entrySet()) {
+            recordCount++;
+            String uuidStr = SafeEncoder.encode(entry.getKey());
+            holders.put(uuidStr, holder);
+            PlayerInfo info = legacyStorage.parse(entry.getValue(), uuidStr, keys.get(i));
+            if (info != null) {
+              consumer.accept(info);
+            }
+          }
+        }
+      } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+
+      pruneOwners(jedis, holders);
+    }
+
+    // players registered by proxies that have not switched to this layout yet
+    return recordCount + legacyStorage.loadAll(consumer);
+  }
+
+  /**
+   * Removes the owner entries whose proxy no longer holds the player, which crashed proxies leave
+   * behind for the players their peers did not know about when purging them.
+   *
+   * @param jedis   the connection
+   * @param holders the proxy of every record that was just read, keyed by UUID
+   */
+  private void pruneOwners(Jedis jedis, Map<String, String> holders) {
+    byte[] ownerKey = SafeEncoder.encode(RedisKeys.PLAYER_OWNER_KEY.getKey());
+    ScanParams params = new ScanParams().count(SCAN_BATCH_SIZE);
+    String cursor = ScanParams.SCAN_POINTER_START;
+    do {
+      ScanResult<Map.Entry<String, String>> result =
+          jedis.hscan(RedisKeys.PLAYER_OWNER_KEY.getKey(), cursor, params);
+      cursor = result.getCursor();
+
+      Pipeline pipeline = null;
+      for (Map.Entry<String, String> entry : result.getResult()) {
+        if (entry.getValue().equals(holders.get(entry.getKey()))) {
+          continue;
+        }
+        if (pipeline == null) {
+          pipeline = jedis.pipelined();
+        }
+        // checked again by the script, the player may have registered since the records were read
+        pipeline.eval(
+            PRUNE_SCRIPT_BYTES,
+            Arrays.asList(ownerKey, SafeEncoder.encode(proxyPlayersKey(entry.getValue()))),
+            Arrays.asList(
+                SafeEncoder.encode(entry.getKey()), SafeEncoder.encode(entry.getValue())));
+      }
+      if (pipeline != null) {
+        pipeline.sync();
+      }
+    } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+  }
+
+  @Override
+  public List<PlayerInfo> loadProxy(String proxyId) {
+    String key = proxyPlayersKey(proxyId);
+    Map<byte[], byte[]> records;
+    try (Jedis jedis = jedisPool.getResource()) {
+      records = jedis.hgetAll(SafeEncoder.encode(key));
+    }
+    if (records.isEmpty()) {
+      // the proxy may still be using the key layout
+      return legacyStorage.loadProxy(proxyId);
+    }
+
+    List<PlayerInfo> infos = new ArrayList<>(records.size());
+    for (Map.Entry<byte[], byte[]> entry : records.entrySet()) {
+      PlayerInfo info =
+          legacyStorage.parse(entry.getValue(), SafeEncoder.encode(entry.getKey()), key);
+      if (info != null) {
+        infos.add(info);
+      }
+    }
+    return infos;
+  }
+
+  @Override
+  public void purgeProxy(String proxyId, Collection<UUID> uuids) {
+    List<String> args = new ArrayList<>(uuids.size() + 1);
+    args.add(proxyId);
+    for (UUID uuid : uuids) {
+      args.add(uuid.toString());
+    }
+
+    Object deleted;
+    try (Jedis jedis = jedisPool.getResource()) {
+      deleted =
+          jedis.eval(
+              PURGE_SCRIPT,
+              Arrays.asList(RedisKeys.PLAYER_OWNER_KEY.getKey(), proxyPlayersKey(proxyId)),
+              args);
+    }
+    if (Long.valueOf(0L).equals(deleted)) {
+      // the proxy may have been using the key layout
+      legacyStorage.purgeProxy(proxyId, uuids);
+    }
+  }
+
+  @Override
+  public List<UUID> refreshExpire(Collection<UUID> uuids) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      if (jedis.expire(proxyPlayersKey(proxyId), expireSeconds) == 0) {
+        return new ArrayList<>(uuids);
+      }
+    }
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,119 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.time.Duration;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.config.VelocityRedisBridgeConfig;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
+
+/** Stores the players and exchanges the messages through a redis server. */
+public class JedisBackend implements BridgeBackend {
+
+  private final VelocityRedisBridge plugin;
+  private final VelocityRedisBridgeConfig config;
+  private final JedisPool jedisPool;
+  private final JedisProxyRegistry proxyRegistry;
+
+  public JedisBackend(VelocityRedisBridge plugin) {
+    this.plugin = plugin;
+    this.config = plugin.getVelocityRedisBridgeConfig();
+    this.jedisPool = createJedisPool(config);
+    this.proxyRegistry =
+        new JedisProxyRegistry(jedisPool, config.getProxyHeartbeatTimeoutSeconds());
+  }
+
+  private static JedisPool createJedisPool(VelocityRedisBridgeConfig config) {
+    String hostName = config.getRedisConnectionInfo().getHost();
+    int port = config.getRedisConnectionInfo().getPort();
+
+    JedisPoolConfig poolConfig = new JedisPoolConfig();
+    poolConfig.setMaxTotal(config.getRedisMaxConnections());
+    poolConfig.setMaxIdle(config.getRedisMaxConnections());
+    // getResource() throws JedisExhaustedPoolException instead of blocking forever
+    poolConfig.setMaxWait(Duration.ofMillis(config.getRedisMaxWaitMillis()));
+
+    if (config.getRedisUserName() != null && config.getRedisPassword() != null) {
+      return new JedisPool(
+          poolConfig,
+          hostName,
+          port,
+          Protocol.DEFAULT_TIMEOUT,
+          config.getRedisUserName(),
+          config.getRedisPassword());
+    } else if (config.getRedisPassword() != null) {
+      return new JedisPool(poolConfig, hostName, port, 3000, config.getRedisPassword());
+    } else if (config.getRedisUserName() != null && config.getRedisPassword() == null) {
+      throw new IllegalArgumentException(
+          "Redis password cannot be null if redis username is not null");
+    } else {
+      return new JedisPool(poolConfig, hostName, port);
+    }
+  }
+
+  @Override
+  public ProxyRegistry getProxyRegistry() {
+    return proxyRegistry;
+  }
+
+  @Override
+  public PlayerInfoStorage createPlayerInfoStorage(String proxyId) {
+    long expireSeconds = config.getRedisCacheExpireSeconds();
+    if (config.getStorageLayout() == PlayerInfoStorageLayout.HASH) {
+      return new HashPlayerInfoStorage(
+          jedisPool, plugin.getLogger(), proxyId, config.getPlayerInfoCodec(), expireSeconds);
+    }
+    return new KeyPlayerInfoStorage(
+        jedisPool, plugin.getLogger(), config.getPlayerInfoCodec(), expireSeconds);
+  }
+
+  @Override
+  public MessagePublisher createMessagePublisher() {
+    if (config.getTransport() == MessageTransport.STREAMS) {
+      return new StreamMessagePublisher(
+          jedisPool, config.getStreamMaxLength(), plugin.getMetrics().getPublishLatency());
+    }
+    if (!config.isPublisherBatching()) {
+      return new DirectMessagePublisher(jedisPool, plugin.getMetrics().getPublishLatency());
+    }
+    return new BatchingMessagePublisher(
+        jedisPool,
+        plugin.getLogger(),
+        config.getPublisherMaxBatchSize(),
+        config.getPublisherLingerMillis(),
+        config.getPublisherQueueCapacity(),
+        plugin.getMetrics().getPublishLatency());
+  }
+
+  @Override
+  public MessageSubscriber createMessageSubscriber() {
+    if (config.getTransport() == MessageTransport.STREAMS) {
+      return new StreamMessageSubscriber(
+          plugin,
+          jedisPool,
+          config.getSubscriberWorkerThreads(),
+          config.getSubscriberQueueCapacity(),
+          config.getSubscriberReconnectInitialDelayMillis(),
+          config.getSubscriberReconnectMaxDelayMillis(),
+          config.getStreamReadCount());
+    }
+    return new RedisMessageSubscriber(
+        plugin,
+        jedisPool,
+        config.getSubscriberWorkerThreads(),
+        config.getSubscriberQueueCapacity(),
+        config.getSubscriberReconnectInitialDelayMillis(),
+        config.getSubscriberReconnectMaxDelayMillis());
+  }
+
+  @Override
+  public String describeConnections() {
+    return "Pool: active=" + jedisPool.getNumActive() + " idle=" + jedisPool.getNumIdle()
+        + " waiting=" + jedisPool.getNumWaiters();
+  }
+
+  @Override
+  public void close() {
+    jedisPool.close();
+  }
+}
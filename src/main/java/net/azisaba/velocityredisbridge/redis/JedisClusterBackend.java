@@ -0,0 +1,115 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.time.Duration;
+import java.util.HashSet;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.config.VelocityRedisBridgeConfig;
+import redis.clients.jedis.ConnectionPool;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.JedisCluster;
+
+/**
+ * Stores the players and exchanges the messages through a redis cluster. The players are always
+ * stored with {@link ClusterPlayerInfoStorage}, and messages always use PUBLISH/SUBSCRIBE without
+ * batching, which the cluster forwards to the subscribers on every node. Sharded pub/sub would keep
+ * a message on the node of its channel, but SPUBLISH and SSUBSCRIBE are not in this Jedis version.
+ */
+public class JedisClusterBackend implements BridgeBackend {
+
+  private final VelocityRedisBridge plugin;
+  private final VelocityRedisBridgeConfig config;
+  private final JedisCluster jedisCluster;
+  private final ClusterProxyRegistry proxyRegistry;
+
+  public JedisClusterBackend(VelocityRedisBridge plugin) {
+    this.plugin = plugin;
+    this.config = plugin.getVelocityRedisBridgeConfig();
+    this.jedisCluster = createJedisCluster(config);
+    this.proxyRegistry =
+        new ClusterProxyRegistry(jedisCluster, config.getProxyHeartbeatTimeoutSeconds());
+
+    if (config.getTransport() == MessageTransport.STREAMS) {
+      plugin.getLogger().warning("transport: streams is not supported on a cluster, using pubsub");
+    }
+    if (config.isPublisherBatching()) {
+      plugin
+          .getLogger()
+          .info("publisher.batching is not supported on a cluster, publishing directly");
+    }
+  }
+
+  private static JedisCluster createJedisCluster(VelocityRedisBridgeConfig config) {
+    if (config.getRedisUserName() != null && config.getRedisPassword() == null) {
+      throw new IllegalArgumentException(
+          "Redis password cannot be null if redis username is not null");
+    }
+
+    // one pool per node
+    ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+    poolConfig.setMaxTotal(config.getRedisMaxConnections());
+    poolConfig.setMaxIdle(config.getRedisMaxConnections());
+    poolConfig.setMaxWait(Duration.ofMillis(config.getRedisMaxWaitMillis()));
+
+    DefaultJedisClientConfig clientConfig =
+        DefaultJedisClientConfig.builder()
+            .user(config.getRedisUserName())
+            .password(config.getRedisPassword())
+            .build();
+    return new JedisCluster(
+        new HashSet<>(config.getRedisClusterNodes()),
+        clientConfig,
+        JedisCluster.DEFAULT_MAX_ATTEMPTS,
+        poolConfig);
+  }
+
+  @Override
+  public ProxyRegistry getProxyRegistry() {
+    return proxyRegistry;
+  }
+
+  @Override
+  public PlayerInfoStorage createPlayerInfoStorage(String proxyId) {
+    return new ClusterPlayerInfoStorage(
+        jedisCluster,
+        plugin.getLogger(),
+        proxyId,
+        config.getPlayerInfoCodec(),
+        config.getRedisCacheExpireSeconds());
+  }
+
+  @Override
+  public MessagePublisher createMessagePublisher() {
+    return new ClusterMessagePublisher(jedisCluster, plugin.getMetrics().getPublishLatency());
+  }
+
+  @Override
+  public MessageSubscriber createMessageSubscriber() {
+    return new RedisMessageSubscriber(
+        plugin,
+        jedisCluster::subscribe,
+        config.getSubscriberWorkerThreads(),
+        config.getSubscriberQueueCapacity(),
+        config.getSubscriberReconnectInitialDelayMillis(),
+        config.getSubscriberReconnectMaxDelayMillis());
+  }
+
+  @Override
+  public String describeConnections() {
+    int active = 0;
+    int idle = 0;
+    int waiting = 0;
+    for (ConnectionPool pool : jedisCluster.getClusterNodes().values()) {
+      active += pool.getNumActive();
+      idle += pool.getNumIdle();
+      waiting += pool.getNumWaiters();
+    }
+    return "Cluster: nodes=" + jedisCluster.getClusterNodes().size() + " active=" + active
+        + " idle=" + idle + " waiting=" + waiting;
+  }
+
+  @Override
+  public void close() {
+    jedisCluster.close();
+  }
+}
@@ -0,0 +1,81 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+
+/** Tracks the proxies with one server id key per proxy that expires after the timeout. */
+@RequiredArgsConstructor
+public class JedisProxyRegistry implements ProxyRegistry {
+
+  private final JedisPool jedisPool;
+  private final long timeoutSeconds;
+
+  private static String serverIdKey(String proxyId) {
+    return RedisKeys.SERVER_ID_PREFIX + ":" + proxyId;
+  }
+
+  @Override
+  public String claimProxyId() {
+    return new ServerUniqueIdDefiner(jedisPool, timeoutSeconds).define();
+  }
+
+  @Override
+  public boolean refresh(String proxyId) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      // XX fails if the key has expired, which means a peer may have given up on us
+      String key = serverIdKey(proxyId);
+      SetParams existing = SetParams.setParams().ex(timeoutSeconds).xx();
+      if (jedis.set(key, DIRECT_CHANNELS_VALUE, existing) != null) {
+        return true;
+      }
+      jedis.set(key, DIRECT_CHANNELS_VALUE, SetParams.setParams().ex(timeoutSeconds));
+      return false;
+    }
+  }
+
+  @Override
+  public List<String> findStopped(List<String> proxyIds) {
+    List<Response<Boolean>> responses = new ArrayList<>(proxyIds.size());
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (String proxyId : proxyIds) {
+        responses.add(pipeline.exists(serverIdKey(proxyId)));
+      }
+      pipeline.sync();
+    }
+
+    List<String> stopped = new ArrayList<>();
+    for (int i = 0; i < proxyIds.size(); i++) {
+      if (!responses.get(i).get()) {
+        stopped.add(proxyIds.get(i));
+      }
+    }
+    return stopped;
+  }
+
+  @Override
+  public List<String> findDirectReceivers(List<String> proxyIds) {
+    List<Response<String>> responses = new ArrayList<>(proxyIds.size());
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (String proxyId : proxyIds) {
+        responses.add(pipeline.get(serverIdKey(proxyId)));
+      }
+      pipeline.sync();
+    }
+
+    List<String> receivers = new ArrayList<>();
+    for (int i = 0; i < proxyIds.size(); i++) {
+      if (DIRECT_CHANNELS_VALUE.equals(responses.get(i).get())) {
+        receivers.add(proxyIds.get(i));
+      }
+    }
+    return receivers;
+  }
+}
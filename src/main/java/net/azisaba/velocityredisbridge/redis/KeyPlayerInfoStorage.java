@@ -0,0 +1,258 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodec;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Stores each player as a separate string key {@code velocity-redis-bridge:player:<uuid>} with its
+ * own expiration.
+ */
+@RequiredArgsConstructor
+public class KeyPlayerInfoStorage implements PlayerInfoStorage {
+
+  private static final int SCAN_BATCH_SIZE = 1000;
+
+  // KEYS: player key
+  // ARGV: the record that was read
+  private static final byte[] DELETE_IF_UNCHANGED_SCRIPT =
+      SafeEncoder.encode(
+          "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+              + "return 0");
+
+  private final JedisPool jedisPool;
+  private final Logger logger;
+  private final PlayerInfoCodec codec;
+  private final long expireSeconds;
+
+  static String playerKey(UUID uuid) {
+    return RedisKeys.PLAYERS_KEY_PREFIX + ":" + uuid.toString();
+  }
+
+  private static byte[] binaryPlayerKey(UUID uuid) {
+    return SafeEncoder.encode(playerKey(uuid));
+  }
+
+  @Override
+  public boolean register(PlayerInfo info) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      String returnValue =
+          jedis.set(
+              binaryPlayerKey(info.getUuid()),
+              codec.encode(info),
+              SetParams.setParams().ex(expireSeconds).nx());
+      return returnValue != null;
+    }
+  }
+
+  @Override
+  public List<Boolean> registerAll(List<PlayerInfo> infos) {
+    List<Response<String>> responses = new ArrayList<>(infos.size());
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (PlayerInfo info : infos) {
+        responses.add(
+            pipeline.set(
+                binaryPlayerKey(info.getUuid()),
+                codec.encode(info),
+                SetParams.setParams().ex(expireSeconds).nx()));
+      }
+      pipeline.sync();
+    }
+
+    List<Boolean> results = new ArrayList<>(responses.size());
+    for (Response<String> response : responses) {
+      results.add(response.get() != null);
+    }
+    return results;
+  }
+
+  @Override
+  public void save(PlayerInfo info) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.set(
+          binaryPlayerKey(info.getUuid()),
+          codec.encode(info),
+          SetParams.setParams().ex(expireSeconds));
+    }
+  }
+
+  @Override
+  public void delete(UUID uuid) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.del(playerKey(uuid));
+    }
+  }
+
+  @Override
+  public int loadAll(Consumer<PlayerInfo> consumer) {
+    int keyCount = 0;
+    try (Jedis jedis = jedisPool.getResource()) {
+      ScanParams params =
+          new ScanParams().match(RedisKeys.PLAYERS_KEY_PREFIX + ":*").count(SCAN_BATCH_SIZE);
+      String cursor = ScanParams.SCAN_POINTER_START;
+      do {
+        ScanResult<String> result = jedis.scan(cursor, params);
+        cursor = result.getCursor();
+
+        List<String> keys = result.getResult();
+        if (keys.isEmpty()) {
+          continue;
+        }
+        keyCount += keys.size();
+
+        byte[][] binaryKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+          binaryKeys[i] = SafeEncoder.encode(keys.get(i));
+        }
+
+        List<byte[]> values = jedis.mget(binaryKeys);
+        for (int i = 0; i < keys.size(); i++) {
+          String key = keys.get(i);
+          String uuidStr = key.substring(RedisKeys.PLAYERS_KEY_PREFIX.getKey().length() + 1);
+          PlayerInfo info = parse(values.get(i), uuidStr, key);
+          if (info != null) {
+            consumer.accept(info);
+          }
+        }
+      } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    }
+    return keyCount;
+  }
+
+  @Override
+  public List<PlayerInfo> loadProxy(String proxyId) {
+    // this layout has no per-proxy grouping, so every record has to be read
+    List<PlayerInfo> infos = new ArrayList<>();
+    loadAll(
+        info -> {
+          if (proxyId.equals(info.getProxyServer())) {
+            infos.add(info);
+          }
+        });
+    return infos;
+  }
+
+  @Override
+  public List<UUID> refreshExpire(Collection<UUID> uuids) {
+    List<UUID> order = new ArrayList<>(uuids);
+    List<Response<Long>> responses = new ArrayList<>(order.size());
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (UUID uuid : order) {
+        responses.add(pipeline.expire(binaryPlayerKey(uuid), expireSeconds));
+      }
+      pipeline.sync();
+    }
+
+    List<UUID> missing = new ArrayList<>();
+    for (int i = 0; i < order.size(); i++) {
+      if (responses.get(i).get() == 0) {
+        missing.add(order.get(i));
+      }
+    }
+    return missing;
+  }
+
+  @Override
+  public void purgeProxy(String proxyId, Collection<UUID> uuids) {
+    if (uuids.isEmpty()) {
+      return;
+    }
+
+    byte[][] keys = new byte[uuids.size()][];
+    int i = 0;
+    for (UUID uuid : uuids) {
+      keys[i++] = binaryPlayerKey(uuid);
+    }
+    try (Jedis jedis = jedisPool.getResource()) {
+      // the local index may be stale, a player may have registered on a live proxy since
+      List<byte[]> records = jedis.mget(keys);
+      Pipeline pipeline = null;
+      for (int j = 0; j < keys.length; j++) {
+        byte[] record = records.get(j);
+        if (!ownedBy(record, proxyId)) {
+          continue;
+        }
+        if (pipeline == null) {
+          pipeline = jedis.pipelined();
+        }
+        // checked again by the script, the record may have changed since it was read
+        pipeline.eval(
+            DELETE_IF_UNCHANGED_SCRIPT,
+            Collections.singletonList(keys[j]),
+            Collections.singletonList(record));
+      }
+      if (pipeline != null) {
+        pipeline.sync();
+      }
+    }
+  }
+
+  private boolean ownedBy(byte[] record, String proxyId) {
+    if (record == null) {
+      return false;
+    }
+    try {
+      return proxyId.equals(PlayerInfoCodecs.decode(record).getProxyServer());
+    } catch (RuntimeException e) {
+      // left to expire
+      return false;
+    }
+  }
+
+  /**
+   * Parses a stored PlayerInfo.
+   *
+   * @param data    the stored data, or null if the record expired before it was read
+   * @param uuidStr the UUID taken from the key or field name of the record
+   * @param source  the location of the record, used in the warning when parsing fails
+   * @return Returns the parsed PlayerInfo, or null if it could not be parsed
+   */
+  PlayerInfo parse(byte[] data, String uuidStr, String source) {
+    return parse(logger, data, uuidStr, source);
+  }
+
+  /**
+   * Parses a stored PlayerInfo, like {@link #parse(byte[], String, String)}.
+   *
+   * @param logger  the logger of the warning when parsing fails
+   * @param data    the stored data, or null if the record expired before it was read
+   * @param uuidStr the UUID taken from the key or field name of the record
+   * @param source  the location of the record
+   * @return Returns the parsed PlayerInfo, or null if it could not be parsed
+   */
+  static PlayerInfo parse(Logger logger, byte[] data, String uuidStr, String source) {
+    if (data == null) {
+      return null;
+    }
+
+    try {
+      PlayerInfo info = PlayerInfoCodecs.decode(data);
+      if (info.getUuid() == null) {
+        info.setUuid(UUID.fromString(uuidStr));
+      }
+      return info;
+    } catch (Exception e) {
+      logger.warning("Failed to parse PlayerInfo from redis: " + source);
+      e.printStackTrace();
+      return null;
+    }
+  }
+}
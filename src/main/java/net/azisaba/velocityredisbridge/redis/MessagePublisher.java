@@ -0,0 +1,47 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import redis.clients.jedis.util.SafeEncoder;
+
+/** Publishes messages to redis channels. */
+public interface MessagePublisher {
+
+  /**
+   * Publishes the specified message to the specified channel.
+   *
+   * @param channel the channel to publish to
+   * @param message the message to publish
+   * @return Returns a future completed with the number of subscribers that received the message
+   */
+  CompletableFuture<Long> publish(byte[] channel, byte[] message);
+
+  /**
+   * Publishes the specified message to the specified channel.
+   *
+   * @param channel the channel to publish to
+   * @param message the message to publish
+   * @return Returns a future completed with the number of subscribers that received the message
+   */
+  default CompletableFuture<Long> publish(String channel, String message) {
+    return publish(SafeEncoder.encode(channel), SafeEncoder.encode(message));
+  }
+
+  /**
+   * Publishes the specified messages to the specified channel in order.
+   *
+   * @param channel  the channel to publish to
+   * @param messages the messages to publish
+   * @return Returns a future completed when every message has been published
+   */
+  default CompletableFuture<Void> publishAll(byte[] channel, List<byte[]> messages) {
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[messages.size()];
+    for (int i = 0; i < messages.size(); i++) {
+      futures[i] = publish(channel, messages.get(i));
+    }
+    return CompletableFuture.allOf(futures);
+  }
+
+  /** Publishes the messages that are still pending and releases the resources. */
+  default void close() {}
+}
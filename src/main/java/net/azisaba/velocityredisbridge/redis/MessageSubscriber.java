@@ -0,0 +1,208 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.util.KeyedOrderedExecutor;
+
+/**
+ * Receives the messages of the channels that have a handler from a dedicated thread, reconnecting
+ * with exponential backoff for as long as the plugin is running. The receiving thread only hands
+ * the messages over to worker lanes, so a slow handler never delays reading from redis. Messages
+ * of the same channel are handled in the order they were received.
+ */
+public abstract class MessageSubscriber {
+
+  protected final VelocityRedisBridge plugin;
+  private final long reconnectInitialDelayMillis;
+  private final long reconnectMaxDelayMillis;
+
+  protected final Map<String, ChannelHandler> handlers = new ConcurrentHashMap<>();
+  private final KeyedOrderedExecutor workers;
+
+  private final Thread thread;
+  protected volatile boolean running = true;
+  // only accessed from the receiving thread
+  private int failedAttempts;
+
+  private final LongAdder reconnectCount = new LongAdder();
+
+  protected MessageSubscriber(
+      VelocityRedisBridge plugin,
+      int workerThreads,
+      int queueCapacity,
+      long reconnectInitialDelayMillis,
+      long reconnectMaxDelayMillis) {
+    this.plugin = plugin;
+    this.reconnectInitialDelayMillis = reconnectInitialDelayMillis;
+    this.reconnectMaxDelayMillis = reconnectMaxDelayMillis;
+    this.workers =
+        new KeyedOrderedExecutor("VelocityRedisBridge Handler", workerThreads, queueCapacity);
+
+    this.thread = new Thread(this::runReceiver, "VelocityRedisBridge Subscriber");
+    this.thread.setDaemon(true);
+  }
+
+  /**
+   * Connects and receives messages until the connection is lost or this subscriber is closed.
+   * Implementations call {@link #connected()} once receiving has started, and throw when the
+   * connection is lost.
+   */
+  protected abstract void receive();
+
+  /**
+   * Called when a channel is registered for the first time.
+   *
+   * @param channel the name of the channel
+   */
+  protected void onChannelAdded(String channel) {}
+
+  /** Called from {@link #close()} to make {@link #receive()} return. */
+  protected void stopReceiving() {}
+
+  /**
+   * Deletes what the transport keeps in redis for the channels of the specified proxy, such as the
+   * channel of its forwarded messages. Does nothing unless the transport stores messages.
+   *
+   * @param proxyId the id of a stopped proxy, or of this proxy on shutdown
+   */
+  public void deleteProxyChannels(String proxyId) {}
+
+  /**
+   * Registers the handler of the specified channel. If this subscriber is already receiving, the
+   * channel is received immediately.
+   *
+   * @param channel the exact name of the channel
+   * @param handler the handler of the messages on the channel
+   */
+  public void registerHandler(String channel, ChannelHandler handler) {
+    if (handlers.put(channel, handler) == null) {
+      onChannelAdded(channel);
+    }
+  }
+
+  /**
+   * Registers the handler of the specified channel.
+   *
+   * @param channel the channel
+   * @param handler the handler of the messages on the channel
+   */
+  public void registerHandler(RedisKeys channel, ChannelHandler handler) {
+    registerHandler(channel.getKey(), handler);
+  }
+
+  /** Starts the receiving thread. */
+  public void subscribe() {
+    thread.start();
+  }
+
+  /** Stops receiving and waits for the queued messages to be handled. */
+  public void close() {
+    running = false;
+    stopReceiving();
+    thread.interrupt();
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    workers.shutdown(5, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Gets the number of received messages waiting to be handled.
+   *
+   * @return Returns the number of queued messages
+   */
+  public int getQueueSize() {
+    return workers.getQueueSize();
+  }
+
+  /**
+   * Gets the number of received messages that were dropped because the queue was full.
+   *
+   * @return Returns the number of dropped messages
+   */
+  public long getDroppedCount() {
+    return workers.getRejectedCount();
+  }
+
+  /**
+   * Gets the number of times the connection was lost and established again.
+   *
+   * @return Returns the number of reconnects
+   */
+  public long getReconnectCount() {
+    return reconnectCount.sum();
+  }
+
+  /** Resets the reconnect backoff. */
+  protected final void connected() {
+    failedAttempts = 0;
+  }
+
+  /**
+   * Hands the specified message over to the worker lane of its channel.
+   *
+   * @param channel the name of the channel
+   * @param message the raw message
+   */
+  protected final void dispatch(String channel, byte[] message) {
+    ChannelHandler handler = handlers.get(channel);
+    if (handler == null) {
+      return;
+    }
+
+    plugin.getMetrics().messageReceived(channel);
+    long receivedNanos = System.nanoTime();
+    if (!workers.execute(channel, () -> handle(channel, handler, message, receivedNanos))) {
+      // missed player updates are repaired by the resync of the sender
+      plugin.getLogger().fine("Dropped a message on " + channel + ", queue is full");
+    }
+  }
+
+  private void runReceiver() {
+    while (running) {
+      try {
+        receive();
+      } catch (RuntimeException e) {
+        if (running) {
+          plugin.getLogger().warning("Lost the connection to redis: " + e.getMessage());
+        }
+      }
+      if (!running) {
+        return;
+      }
+
+      reconnectCount.increment();
+      try {
+        Thread.sleep(nextReconnectDelayMillis());
+      } catch (InterruptedException e) {
+        // close() was called
+        return;
+      }
+    }
+  }
+
+  private long nextReconnectDelayMillis() {
+    int shift = Math.min(failedAttempts++, 20);
+    long delay = Math.min(reconnectMaxDelayMillis, reconnectInitialDelayMillis << shift);
+    // half fixed, half random, so that every proxy does not reconnect at the same moment
+    long half = delay / 2;
+    return half + ThreadLocalRandom.current().nextLong(half + 1);
+  }
+
+  private void handle(String channel, ChannelHandler handler, byte[] message, long receivedNanos) {
+    plugin.getMetrics().getHandlerLag().recordSince(receivedNanos);
+    try {
+      handler.handle(message);
+    } catch (Exception e) {
+      plugin.getLogger().warning("Failed to handle a message on " + channel);
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package net.azisaba.velocityredisbridge.redis;
+
+public enum MessageTransport {
+  /** PUBLISH/SUBSCRIBE. Messages sent while a proxy is disconnected are lost. */
+  PUBSUB,
+  /** One stream per channel. Proxies resume from the last entry they read after a reconnect. */
+  STREAMS
+}
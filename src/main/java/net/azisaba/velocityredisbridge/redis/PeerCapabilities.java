@@ -0,0 +1,33 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Remembers which peers receive messages on their own channels. Proxies of older versions count as
+ * receivers of those channels through their pattern subscription but ignore the messages, so a
+ * peer is only sent to directly once it has advertised the support next to its server id key.
+ */
+public class PeerCapabilities {
+
+  private volatile Set<String> directReceivers = Set.of();
+
+  /**
+   * Checks if the specified proxy handles messages on its own channels.
+   *
+   * @param proxyId the id of the proxy
+   * @return Returns true if the proxy advertised the support in the last check
+   */
+  public boolean receivesDirect(String proxyId) {
+    return directReceivers.contains(proxyId);
+  }
+
+  /**
+   * Replaces the peers known to handle messages on their own channels.
+   *
+   * @param proxyIds the ids of the peers that advertised the support
+   */
+  public void update(Collection<String> proxyIds) {
+    directReceivers = Set.copyOf(proxyIds);
+  }
+}
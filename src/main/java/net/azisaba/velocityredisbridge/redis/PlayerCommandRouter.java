@@ -0,0 +1,105 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * Routes commands directed at a single player to the channel of the proxy the player is connected
+ * to, so that only that proxy receives them. Falls back to the broadcast channel when the location
+ * of the player is unknown or turns out to be stale, and when the proxy has not advertised that it
+ * handles its own channels, since older versions receive them but drop the commands.
+ */
+@RequiredArgsConstructor
+public class PlayerCommandRouter {
+
+  private final PlayerInfoHandler playerInfoHandler;
+  private final MessagePublisher publisher;
+  private final PeerCapabilities peerCapabilities;
+  private final String proxyId;
+
+  private final LongAdder targetedCount = new LongAdder();
+  private final LongAdder fallbackCount = new LongAdder();
+
+  /**
+   * Gets the channel on which only the specified proxy receives the specified command.
+   *
+   * @param channel the broadcast channel of the command
+   * @param proxyId the id of the proxy
+   * @return Returns the channel of the proxy
+   */
+  public static String proxyChannel(RedisKeys channel, String proxyId) {
+    return channel.getKey() + ":" + proxyId;
+  }
+
+  /**
+   * Sends the specified command to the proxy the specified player is connected to.
+   *
+   * @param channel    the broadcast channel of the command
+   * @param playerName the name of the player
+   * @param payload    the arguments of the command following the player name
+   * @return Returns a future completed once the command has been published
+   */
+  public CompletableFuture<Void> route(RedisKeys channel, String playerName, String payload) {
+    String message = playerName + ":" + payload;
+
+    PlayerInfo info = playerInfoHandler.get(playerName);
+    String targetProxyId = info == null ? null : info.getProxyServer();
+    if (targetProxyId == null || targetProxyId.equals(proxyId)) {
+      // unknown, or the player has already left this proxy
+      return broadcast(channel, message);
+    }
+    if (!peerCapabilities.receivesDirect(targetProxyId)) {
+      // an older version, or a proxy not seen by the heartbeat yet
+      return broadcast(channel, message);
+    }
+
+    targetedCount.increment();
+    return publisher
+        .publish(proxyChannel(channel, targetProxyId), message)
+        .thenCompose(
+            receivers -> {
+              // the proxy has stopped since the last heartbeat check
+              if (receivers == 0) {
+                return broadcast(channel, message);
+              }
+              return CompletableFuture.completedFuture(null);
+            });
+  }
+
+  /**
+   * Broadcasts a command received on the channel of this proxy for a player that is not connected
+   * to this proxy anymore.
+   *
+   * @param channel the broadcast channel of the command
+   * @param message the received message
+   */
+  public void redirect(RedisKeys channel, String message) {
+    broadcast(channel, message);
+  }
+
+  /**
+   * Gets the number of commands that were sent to the channel of a single proxy.
+   *
+   * @return Returns the number of targeted deliveries
+   */
+  public long getTargetedCount() {
+    return targetedCount.sum();
+  }
+
+  /**
+   * Gets the number of commands that were broadcast to every proxy, including targeted deliveries
+   * that had to be broadcast again.
+   *
+   * @return Returns the number of fallback deliveries
+   */
+  public long getFallbackCount() {
+    return fallbackCount.sum();
+  }
+
+  private CompletableFuture<Void> broadcast(RedisKeys channel, String message) {
+    fallbackCount.increment();
+    return publisher.publish(channel.getKey(), message).thenApply(receivers -> null);
+  }
+}
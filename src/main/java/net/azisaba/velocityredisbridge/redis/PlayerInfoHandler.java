@@ -1,281 +1,451 @@
 package net.azisaba.velocityredisbridge.redis;
 
-import com.google.gson.Gson;
 import com.velocitypowered.api.proxy.Player;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodec;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoCodecs;
+import net.azisaba.velocityredisbridge.codec.PlayerInfoNotification;
 import net.azisaba.velocityredisbridge.util.PlayerInfo;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.util.SafeEncoder;
 
 @RequiredArgsConstructor
 public class PlayerInfoHandler {
 
   private final VelocityRedisBridge plugin;
-  private final JedisPool jedisPool;
+  private final MessagePublisher publisher;
+  private final PlayerInfoStorage storage;
+  private final PlayerInfoCodec codec;
   private final String proxyId;
-  private final Gson gson = new Gson();
 
-  private final ReentrantLock lock = new ReentrantLock();
-  private final HashMap<UUID, PlayerInfo> playerInfoMap = new HashMap<>();
-  private final HashMap<String, UUID> mcidMap = new HashMap<>();
-  private final HashMap<String, Set<PlayerInfo>> playerInfoProxyServerMap = new HashMap<>();
-  private final HashMap<String, Set<PlayerInfo>> playerInfoChildServerMap = new HashMap<>();
+  private static final byte[] INFO_UPDATE_NOTIFY_CHANNEL =
+      SafeEncoder.encode(RedisKeys.INFO_UPDATE_NOTIFY.getKey());
 
-  public boolean register(PlayerInfo info) {
-    boolean redisSuccess;
-    try (Jedis jedis = jedisPool.getResource()) {
-      String returnValue =
-          jedis.set(
-              RedisKeys.PLAYERS_KEY_PREFIX + ":" + info.getUuid().toString(),
-              gson.toJson(info),
-              SetParams.setParams()
-                  .ex(plugin.getVelocityRedisBridgeConfig().getRedisCacheExpireSeconds())
-                  .nx());
-
-      redisSuccess = returnValue != null;
-
-      if (redisSuccess) {
-        jedis.publish(RedisKeys.INFO_UPDATE_NOTIFY.getKey(), gson.toJson(info));
-      }
-    }
+  private volatile PlayerInfoIndex index = new PlayerInfoIndex();
+  private final Set<Queue<PlayerInfo>> pendingUpdateQueues = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean fetching = new AtomicBoolean();
+  // updates share the read lock, a reload takes the write lock to swap in and replay
+  private final ReadWriteLock replayLock = new ReentrantReadWriteLock();
+
+  private final Object publishLock = new Object();
+  private long publishedSequence;
+  private final ConcurrentHashMap<String, Long> lastReceivedSequences = new ConcurrentHashMap<>();
+  private final Set<String> resyncingProxies = ConcurrentHashMap.newKeySet();
 
-    if (!redisSuccess) {
+  private final LongAdder gapCount = new LongAdder();
+  private final LongAdder resyncCount = new LongAdder();
+  private final LongAdder purgedProxyCount = new LongAdder();
+
+  @Getter private volatile long lastFetchDurationMillis = -1;
+  @Getter private volatile int lastFetchKeyCount = -1;
+  @Getter private volatile long lastResyncDurationMillis = -1;
+  @Getter private volatile long lastKeyRefreshDurationMillis = -1;
+
+  public boolean register(PlayerInfo info) {
+    long start = System.nanoTime();
+    boolean registered = storage.register(info);
+    plugin.getMetrics().getRegisterLatency().recordSince(start);
+    if (!registered) {
       return false;
     }
 
-    lock.lock();
-    try {
-      updateToNewPlayerInfo(info);
-    } finally {
-      lock.unlock();
-    }
+    publishUpdate(info);
+
+    applyUpdate(info);
     return true;
   }
 
+  /**
+   * Registers many players with one round trip. Players that are already registered on any proxy
+   * are skipped.
+   *
+   * @param infos the PlayerInfo of the players
+   * @return Returns whether each player was registered, in the order of the specified list
+   */
+  public List<Boolean> registerAll(List<PlayerInfo> infos) {
+    long start = System.nanoTime();
+    List<Boolean> results = storage.registerAll(infos);
+    plugin.getMetrics().getRegisterLatency().recordSince(start);
+
+    List<PlayerInfo> registered = new ArrayList<>();
+    for (int i = 0; i < infos.size(); i++) {
+      if (results.get(i)) {
+        registered.add(infos.get(i));
+      }
+    }
+
+    publishUpdates(registered);
+    registered.forEach(this::applyUpdate);
+    return results;
+  }
+
   public void update(PlayerInfo info) {
-    lock.lock();
-    try {
-      updateToNewPlayerInfo(info);
-    } finally {
-      lock.unlock();
+    applyUpdate(info);
+
+    long start = System.nanoTime();
+    storage.save(info);
+    plugin.getMetrics().getUpdateLatency().recordSince(start);
+    publishUpdate(info);
+  }
+
+  public void unregister(UUID uuid) {
+    PlayerInfo removed = new PlayerInfo(uuid, null, null, -1, null, null);
+    applyUpdate(removed);
+
+    long start = System.nanoTime();
+    storage.delete(uuid);
+    plugin.getMetrics().getUnregisterLatency().recordSince(start);
+    publishUpdate(removed);
+  }
+
+  protected void receivedUpdateNotify(byte[] message) {
+    PlayerInfoNotification notification = PlayerInfoCodecs.decodeNotification(message);
+    PlayerInfo info = notification.getInfo();
+    if (info == null) {
+      return;
     }
 
-    try (Jedis jedis = jedisPool.getResource()) {
-      String strData = gson.toJson(info);
-      jedis.set(
-          RedisKeys.PLAYERS_KEY_PREFIX + ":" + info.getUuid().toString(),
-          strData,
-          SetParams.setParams()
-              .ex(plugin.getVelocityRedisBridgeConfig().getRedisCacheExpireSeconds()));
+    String origin = notification.getOrigin();
+    long sequence = notification.getSequence();
+    if (origin == null || sequence == PlayerInfoNotification.NO_SEQUENCE) {
+      // sent by a proxy running an older version
+      applyUpdate(info);
+      return;
+    }
+    if (origin.equals(proxyId)) {
+      // already applied before publishing
+      return;
+    }
 
-      jedis.publish(RedisKeys.INFO_UPDATE_NOTIFY.getKey(), strData);
+    applyUpdate(info);
+
+    Long last = lastReceivedSequences.put(origin, sequence);
+    if (last != null && sequence > last + 1) {
+      gapCount.increment();
+      plugin
+          .getLogger()
+          .fine("Missed " + (sequence - last - 1) + " update(s) from " + origin + ", resyncing");
+      plugin.getProxy().getScheduler().buildTask(plugin, () -> resync(origin)).schedule();
     }
   }
 
-  public void unregister(UUID uuid) {
-    lock.lock();
+  /**
+   * Reloads only the players of the specified proxy from the storage.
+   *
+   * @param originProxyId the proxy whose updates were missed
+   */
+  public void resync(String originProxyId) {
+    if (!resyncingProxies.add(originProxyId)) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    Queue<PlayerInfo> pendingUpdates = new ConcurrentLinkedQueue<>();
+    pendingUpdateQueues.add(pendingUpdates);
     try {
-      PlayerInfo info = playerInfoMap.remove(uuid);
-      if (info != null) {
-        playerInfoProxyServerMap
-            .getOrDefault(info.getProxyServer(), Collections.emptySet())
-            .remove(info);
-        playerInfoChildServerMap
-            .getOrDefault(info.getChildServer(), Collections.emptySet())
-            .remove(info);
+      List<PlayerInfo> infos = storage.loadProxy(originProxyId);
+
+      replayLock.writeLock().lock();
+      try {
+        PlayerInfoIndex current = index;
+        current.replaceProxy(originProxyId, infos);
+        for (PlayerInfo info : pendingUpdates) {
+          current.update(info);
+        }
+      } finally {
+        replayLock.writeLock().unlock();
       }
     } finally {
-      lock.unlock();
+      pendingUpdateQueues.remove(pendingUpdates);
+      resyncingProxies.remove(originProxyId);
     }
 
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.del(RedisKeys.PLAYERS_KEY_PREFIX + ":" + uuid.toString());
-      jedis.publish(
-          RedisKeys.INFO_UPDATE_NOTIFY.getKey(),
-          gson.toJson(new PlayerInfo(uuid, null, null, -1, null, null)));
-    }
+    resyncCount.increment();
+    lastResyncDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
   }
 
-  protected void receivedUpdateNotify(PlayerInfo info) {
-    lock.lock();
-    try {
-      updateToNewPlayerInfo(info);
-    } finally {
-      lock.unlock();
+  /**
+   * Drops every player of the specified proxy from the storage and from the local index in one
+   * operation. Used when the proxy stopped without unregistering its players.
+   *
+   * @param deadProxyId the id of the stopped proxy
+   */
+  public void purgeProxy(String deadProxyId) {
+    List<PlayerInfo> infos = index.copyInProxy(deadProxyId);
+    List<UUID> uuids = new ArrayList<>(infos.size());
+    for (PlayerInfo info : infos) {
+      uuids.add(info.getUuid());
     }
+
+    storage.purgeProxy(deadProxyId, uuids);
+    index.replaceProxy(deadProxyId, Collections.emptyList());
+    lastReceivedSequences.remove(deadProxyId);
+
+    purgedProxyCount.increment();
+    plugin
+        .getLogger()
+        .info("Proxy " + deadProxyId + " stopped responding, dropped " + uuids.size() + " players");
+  }
+
+  /**
+   * Gets the ids of the proxies that have players connected according to the local index.
+   *
+   * @return Returns the ids of the proxies with players
+   */
+  public List<String> getProxyIds() {
+    return index.proxyIds();
+  }
+
+  /**
+   * Gets the number of proxies whose players were dropped because they stopped responding.
+   *
+   * @return Returns the number of purged proxies
+   */
+  public long getPurgedProxyCount() {
+    return purgedProxyCount.sum();
   }
 
+  /**
+   * Gets the number of sequence gaps detected in the update notifications of other proxies.
+   *
+   * @return Returns the number of detected gaps
+   */
+  public long getGapCount() {
+    return gapCount.sum();
+  }
+
+  /**
+   * Gets the number of per-proxy resyncs that have completed.
+   *
+   * @return Returns the number of completed resyncs
+   */
+  public long getResyncCount() {
+    return resyncCount.sum();
+  }
+
+  /**
+   * Gets the number of players in the network. This is a single volatile read, so it is safe to
+   * call on every server list ping, even while a fetch is running.
+   *
+   * @return Returns the number of players in the network
+   */
   public int getAllPlayersCount() {
-    lock.lock();
-    try {
-      return playerInfoMap.size();
-    } finally {
-      lock.unlock();
-    }
+    return index.size();
   }
 
+  /**
+   * Gets the number of players connected to the specified child server, as cheaply as {@link
+   * #getAllPlayersCount()}.
+   *
+   * @param serverName the name of the child server
+   * @return Returns the number of players connected to the child server
+   */
   public int getPlayersCount(String serverName) {
-    lock.lock();
-    try {
-      return playerInfoChildServerMap.getOrDefault(serverName, Collections.emptySet()).size();
-    } finally {
-      lock.unlock();
-    }
+    return index.sizeInChildServer(serverName);
+  }
+
+  /**
+   * Gets a version that changes whenever a player joins or leaves the network. Read it before
+   * reading the players, and anything built from them stays current while the version is the same.
+   *
+   * @return Returns the version of the players in the network
+   */
+  public long getMembershipVersion() {
+    return index.version();
+  }
+
+  /**
+   * Gets a version that changes whenever a player joins or leaves the specified child server, like
+   * {@link #getMembershipVersion()}.
+   *
+   * @param serverName the name of the child server
+   * @return Returns the version of the players in the child server
+   */
+  public long getMembershipVersion(String serverName) {
+    return index.versionOfChildServer(serverName);
+  }
+
+  /**
+   * Finds a proxy that can reach the specified child server, which is a proxy with a player
+   * connected to it. This proxy is preferred.
+   *
+   * @param serverName the name of the child server
+   * @param eligible   the test the other proxies have to pass
+   * @return Returns the id of the proxy, or null if no eligible proxy has players there
+   */
+  public String findProxyReaching(String serverName, Predicate<String> eligible) {
+    return index.findProxyInChildServer(serverName, proxyId, eligible);
   }
 
   public PlayerInfo get(UUID uuid) {
-    lock.lock();
-    try {
-      return playerInfoMap.get(uuid);
-    } finally {
-      lock.unlock();
-    }
+    return index.get(uuid);
   }
 
   public PlayerInfo get(String userName) {
-    lock.lock();
-    try {
-      UUID uuid = mcidMap.get(userName.toLowerCase(Locale.ROOT));
-      if (uuid == null) {
-        return null;
-      }
-      return playerInfoMap.get(uuid);
-    } finally {
-      lock.unlock();
-    }
+    return index.get(userName);
+  }
+
+  /**
+   * Finds the names of the players in the network whose name starts with the specified prefix,
+   * ignoring case.
+   *
+   * @param prefix the prefix
+   * @param limit  the maximum number of names to return
+   * @return Returns the names in alphabetical order
+   */
+  public List<String> completeName(String prefix, int limit) {
+    return index.completeName(prefix, limit);
   }
 
   public HashMap<UUID, PlayerInfo> getAllPlayerInfo() {
-    lock.lock();
-    try {
-      return new HashMap<>(playerInfoMap);
-    } finally {
-      lock.unlock();
-    }
+    return index.copyAll();
   }
 
   public List<PlayerInfo> getAllPlayerInfoInProxy(String proxySeverId) {
-    lock.lock();
-    try {
-      if (!playerInfoProxyServerMap.containsKey(proxySeverId)) {
-        return Collections.emptyList();
-      }
-      return new ArrayList<>(playerInfoProxyServerMap.get(proxySeverId));
-    } finally {
-      lock.unlock();
-    }
+    return index.copyInProxy(proxySeverId);
   }
 
   public List<PlayerInfo> getAllPlayerInfoInChildServer(String childServer) {
-    lock.lock();
-    try {
-      if (!playerInfoChildServerMap.containsKey(childServer)) {
-        return Collections.emptyList();
-      }
-      return new ArrayList<>(playerInfoChildServerMap.get(childServer));
-    } finally {
-      lock.unlock();
-    }
+    return index.copyInChildServer(childServer);
   }
 
+  /**
+   * Reloads every player from the storage. The new index is built aside while readers keep using
+   * the current one. Updates applied while the reload is running are replayed onto the new index
+   * when it is swapped in, and no update can be applied between the swap and the end of the replay,
+   * so a replayed update never overwrites a newer one. Readers never wait. Missed update
+   * notifications are normally repaired by {@link #resync(String)}, so this only runs as a safety
+   * net.
+   */
   public void fetch() {
-    lock.lock();
+    long start = System.nanoTime();
+
+    if (!fetching.compareAndSet(false, true)) {
+      // another fetch is already running
+      return;
+    }
+
+    Queue<PlayerInfo> pendingUpdates = new ConcurrentLinkedQueue<>();
+    pendingUpdateQueues.add(pendingUpdates);
+    int keyCount;
     try {
-      try (Jedis jedis = jedisPool.getResource()) {
-        playerInfoMap.clear();
-        playerInfoProxyServerMap.clear();
-        playerInfoChildServerMap.clear();
-        mcidMap.clear();
-
-        for (String key : jedis.keys(RedisKeys.PLAYERS_KEY_PREFIX + ":*")) {
-          try {
-            String jsonStr = jedis.get(key);
-            PlayerInfo info = gson.fromJson(jsonStr, PlayerInfo.class);
-
-            if (info.getUuid() == null) {
-              info.setUuid(UUID.fromString(
-                  key.substring(RedisKeys.PLAYERS_KEY_PREFIX.getKey().length() + 1)));
-            }
-
-            updateToNewPlayerInfo(info);
-
-          } catch (Exception e) {
-            plugin.getLogger().warning("Failed to parse PlayerInfo from redis: " + key);
-            e.printStackTrace();
-          }
+      PlayerInfoIndex newIndex = new PlayerInfoIndex();
+      keyCount = storage.loadAll(newIndex::update);
+
+      replayLock.writeLock().lock();
+      try {
+        index = newIndex;
+        for (PlayerInfo info : pendingUpdates) {
+          newIndex.update(info);
         }
+      } finally {
+        replayLock.writeLock().unlock();
       }
     } finally {
-      lock.unlock();
+      pendingUpdateQueues.remove(pendingUpdates);
+      fetching.set(false);
     }
+
+    plugin.getMetrics().getFetchLatency().recordSince(start);
+    lastFetchDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    lastFetchKeyCount = keyCount;
+    plugin
+        .getLogger()
+        .fine("Fetched " + keyCount + " player records in " + lastFetchDurationMillis + "ms");
   }
 
+  /**
+   * Extends the expiration of the records of every player connected to this proxy. Records that
+   * have vanished are registered again in one batch.
+   */
   public void updateAllRedisKeys() {
-    try (Jedis jedis = jedisPool.getResource()) {
-      for (Player player : plugin.getProxy().getAllPlayers()) {
-        String key = RedisKeys.PLAYERS_KEY_PREFIX + ":" + player.getUniqueId().toString();
-        long result =
-            jedis.expire(key, plugin.getVelocityRedisBridgeConfig().getRedisCacheExpireSeconds());
-
-        if (result == 0) {
-          PlayerInfo info =
-              new PlayerInfo(
-                  player.getUniqueId(),
-                  player.getUsername(),
-                  player.getRemoteAddress().getAddress().getHostAddress(),
-                  player.getRemoteAddress().getPort(),
-                  proxyId,
-                  player
-                      .getCurrentServer()
-                      .map(server -> server.getServerInfo().getName())
-                      .orElse(null));
-
-          register(info);
-        }
-      }
+    long start = System.nanoTime();
+
+    Map<UUID, Player> players = new HashMap<>();
+    for (Player player : plugin.getProxy().getAllPlayers()) {
+      players.put(player.getUniqueId(), player);
     }
+
+    List<PlayerInfo> missingInfos = new ArrayList<>();
+    for (UUID uuid : storage.refreshExpire(players.keySet())) {
+      Player player = players.get(uuid);
+      missingInfos.add(
+          new PlayerInfo(
+              player.getUniqueId(),
+              player.getUsername(),
+              player.getRemoteAddress().getAddress().getHostAddress(),
+              player.getRemoteAddress().getPort(),
+              proxyId,
+              player
+                  .getCurrentServer()
+                  .map(server -> server.getServerInfo().getName())
+                  .orElse(null)));
+    }
+
+    if (!missingInfos.isEmpty()) {
+      registerAll(missingInfos);
+    }
+
+    lastKeyRefreshDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    plugin
+        .getLogger()
+        .fine(
+            "Refreshed " + players.size() + " player records (" + missingInfos.size()
+                + " re-registered) in " + lastKeyRefreshDurationMillis + "ms");
   }
 
-  private void updateToNewPlayerInfo(PlayerInfo info) {
-    PlayerInfo old = playerInfoMap.remove(info.getUuid());
-    if (old != null) {
-      playerInfoProxyServerMap
-          .getOrDefault(old.getProxyServer(), Collections.emptySet())
-          .remove(old);
-      playerInfoChildServerMap
-          .getOrDefault(old.getChildServer(), Collections.emptySet())
-          .remove(old);
-      mcidMap.remove(old.getUsername());
+  private void publishUpdate(PlayerInfo info) {
+    // sequence numbers must reach redis in the order they are assigned
+    synchronized (publishLock) {
+      byte[] message =
+          codec.encodeNotification(
+              new PlayerInfoNotification(proxyId, ++publishedSequence, info));
+      publisher.publish(INFO_UPDATE_NOTIFY_CHANNEL, message);
     }
+  }
 
-    if (info.getUuid() != null && info.getUsername() == null) {
+  private void publishUpdates(List<PlayerInfo> infos) {
+    if (infos.isEmpty()) {
       return;
     }
 
-    playerInfoMap.put(info.getUuid(), info);
-    if (playerInfoProxyServerMap.containsKey(info.getProxyServer())) {
-      playerInfoProxyServerMap.get(info.getProxyServer()).add(info);
-    } else {
-      playerInfoProxyServerMap.put(
-          info.getProxyServer(), new HashSet<>(Collections.singletonList(info)));
+    synchronized (publishLock) {
+      List<byte[]> messages = new ArrayList<>(infos.size());
+      for (PlayerInfo info : infos) {
+        messages.add(
+            codec.encodeNotification(
+                new PlayerInfoNotification(proxyId, ++publishedSequence, info)));
+      }
+      publisher.publishAll(INFO_UPDATE_NOTIFY_CHANNEL, messages);
     }
-    if (playerInfoChildServerMap.containsKey(info.getChildServer())) {
-      playerInfoChildServerMap.get(info.getChildServer()).add(info);
-    } else {
-      playerInfoChildServerMap.put(
-          info.getChildServer(), new HashSet<>(Collections.singletonList(info)));
+  }
+
+  private void applyUpdate(PlayerInfo info) {
+    replayLock.readLock().lock();
+    try {
+      index.update(info);
+      for (Queue<PlayerInfo> pendingUpdates : pendingUpdateQueues) {
+        pendingUpdates.add(info);
+      }
+    } finally {
+      replayLock.readLock().unlock();
     }
-    mcidMap.put(info.getUsername().toLowerCase(Locale.ROOT), info.getUuid());
   }
 }
@@ -0,0 +1,317 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * In-memory index of every player in the network. Reads never block. Writes to the same UUID are
+ * serialized by the primary map, while writes to different players proceed in parallel.
+ *
+ * <p>The online counts are kept in counters that every write adjusts while it holds the entry of
+ * the player, so that the server list ping reads a single volatile int instead of summing a map.
+ * Each child server and the whole network also carry a version that changes whenever the set of
+ * player names in them changes, so that responses built from those names can be cached.
+ *
+ * <p>Lowercase names are also kept sorted, so that names starting with a prefix are found by
+ * walking a short range instead of every player.
+ *
+ * <p>PlayerInfo instances stored here must not be mutated afterwards; publish a copy instead.
+ */
+class PlayerInfoIndex {
+
+  // ConcurrentHashMap does not accept null keys, while proxyServer/childServer may be null
+  private static final String NONE = "";
+
+  private final ConcurrentHashMap<UUID, PlayerInfo> playerInfoMap = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, UUID> mcidMap = new ConcurrentHashMap<>();
+  // exact lookups stay on the hash map, this one only answers prefix queries
+  private final ConcurrentSkipListMap<String, UUID> sortedNames = new ConcurrentSkipListMap<>();
+  private final ConcurrentHashMap<String, Set<PlayerInfo>> playerInfoProxyServerMap =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Set<PlayerInfo>> playerInfoChildServerMap =
+      new ConcurrentHashMap<>();
+
+  // shared by every index, so that a version is never reused after a fetch swaps the index
+  private static final AtomicLong VERSION_CLOCK = new AtomicLong();
+
+  private final Membership networkMembership = new Membership();
+  private final ConcurrentHashMap<String, Membership> childServerMemberships =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Applies the specified PlayerInfo. An info without username removes the player.
+   *
+   * @param info the new PlayerInfo
+   */
+  void update(PlayerInfo info) {
+    boolean remove = info.getUuid() != null && info.getUsername() == null;
+
+    playerInfoMap.compute(
+        info.getUuid(),
+        (uuid, old) -> {
+          if (old != null) {
+            removeFromSecondary(old);
+          }
+          if (remove) {
+            if (old != null) {
+              networkMembership.count.decrementAndGet();
+              membershipChanged(old.getChildServer());
+            }
+            return null;
+          }
+
+          if (old == null) {
+            networkMembership.count.incrementAndGet();
+          }
+          playerInfoProxyServerMap
+              .computeIfAbsent(key(info.getProxyServer()), k -> ConcurrentHashMap.newKeySet())
+              .add(info);
+          if (playerInfoChildServerMap
+              .computeIfAbsent(key(info.getChildServer()), k -> ConcurrentHashMap.newKeySet())
+              .add(info)) {
+            childServerMembership(info.getChildServer()).count.incrementAndGet();
+          }
+          String name = info.getUsername().toLowerCase(Locale.ROOT);
+          mcidMap.put(name, info.getUuid());
+          sortedNames.put(name, info.getUuid());
+
+          if (old == null) {
+            membershipChanged(info.getChildServer());
+          } else if (!Objects.equals(old.getChildServer(), info.getChildServer())
+              || !Objects.equals(old.getUsername(), info.getUsername())) {
+            membershipChanged(old.getChildServer());
+            membershipChanged(info.getChildServer());
+          }
+          return info;
+        });
+  }
+
+  /**
+   * Replaces the players of the specified proxy with the specified PlayerInfo.
+   *
+   * @param proxyServerId the proxy id
+   * @param infos         the current PlayerInfo of every player connected to the proxy
+   */
+  void replaceProxy(String proxyServerId, Collection<PlayerInfo> infos) {
+    Set<UUID> current = new HashSet<>();
+    for (PlayerInfo info : infos) {
+      current.add(info.getUuid());
+    }
+
+    for (PlayerInfo old : copyInProxy(proxyServerId)) {
+      if (!current.contains(old.getUuid())) {
+        remove(old);
+      }
+    }
+    for (PlayerInfo info : infos) {
+      update(info);
+    }
+  }
+
+  /**
+   * Removes the specified PlayerInfo unless it has been replaced in the meantime.
+   *
+   * @param expected the PlayerInfo to remove
+   */
+  void remove(PlayerInfo expected) {
+    playerInfoMap.computeIfPresent(
+        expected.getUuid(),
+        (uuid, old) -> {
+          if (old != expected) {
+            return old;
+          }
+          removeFromSecondary(old);
+          networkMembership.count.decrementAndGet();
+          membershipChanged(old.getChildServer());
+          return null;
+        });
+  }
+
+  private void removeFromSecondary(PlayerInfo old) {
+    Set<PlayerInfo> inProxy = playerInfoProxyServerMap.get(key(old.getProxyServer()));
+    if (inProxy != null) {
+      inProxy.remove(old);
+    }
+    Set<PlayerInfo> inChildServer = playerInfoChildServerMap.get(key(old.getChildServer()));
+    if (inChildServer != null && inChildServer.remove(old)) {
+      childServerMembership(old.getChildServer()).count.decrementAndGet();
+    }
+    if (old.getUsername() != null) {
+      String name = old.getUsername().toLowerCase(Locale.ROOT);
+      mcidMap.remove(name, old.getUuid());
+      sortedNames.remove(name, old.getUuid());
+    }
+  }
+
+  private Membership childServerMembership(String childServer) {
+    return childServerMemberships.computeIfAbsent(key(childServer), k -> new Membership());
+  }
+
+  /** Called after the secondary maps have been updated, so a reader never caches stale names. */
+  private void membershipChanged(String childServer) {
+    childServerMembership(childServer).changed();
+    networkMembership.changed();
+  }
+
+  int size() {
+    return networkMembership.count.get();
+  }
+
+  int sizeInChildServer(String childServer) {
+    Membership membership = childServerMemberships.get(key(childServer));
+    return membership == null ? 0 : membership.count.get();
+  }
+
+  /**
+   * Gets the version of the set of player names in the network. Read it before reading the names,
+   * and the names are current for as long as the version stays the same.
+   *
+   * @return Returns the version, unique across every index
+   */
+  long version() {
+    return networkMembership.version;
+  }
+
+  /**
+   * Gets the version of the set of player names in the specified child server, like {@link
+   * #version()}.
+   *
+   * @param childServer the name of the child server
+   * @return Returns the version, or 0 if the child server has never had players
+   */
+  long versionOfChildServer(String childServer) {
+    Membership membership = childServerMemberships.get(key(childServer));
+    return membership == null ? 0 : membership.version;
+  }
+
+  PlayerInfo get(UUID uuid) {
+    return playerInfoMap.get(uuid);
+  }
+
+  PlayerInfo get(String userName) {
+    UUID uuid = mcidMap.get(userName.toLowerCase(Locale.ROOT));
+    if (uuid == null) {
+      return null;
+    }
+    return playerInfoMap.get(uuid);
+  }
+
+  /**
+   * Finds the names of the players whose name starts with the specified prefix, ignoring case.
+   *
+   * @param prefix the prefix
+   * @param limit  the maximum number of names to return
+   * @return Returns the names in alphabetical order
+   */
+  List<String> completeName(String prefix, int limit) {
+    if (limit <= 0) {
+      return Collections.emptyList();
+    }
+
+    String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+    List<String> names = new ArrayList<>(Math.min(limit, 16));
+    for (Map.Entry<String, UUID> entry : sortedNames.tailMap(lowerPrefix).entrySet()) {
+      if (!entry.getKey().startsWith(lowerPrefix)) {
+        break;
+      }
+      PlayerInfo info = playerInfoMap.get(entry.getValue());
+      // the player may have left since the entry was read
+      if (info == null || info.getUsername() == null) {
+        continue;
+      }
+      names.add(info.getUsername());
+      if (names.size() >= limit) {
+        break;
+      }
+    }
+    return names;
+  }
+
+  HashMap<UUID, PlayerInfo> copyAll() {
+    return new HashMap<>(playerInfoMap);
+  }
+
+  List<PlayerInfo> copyInProxy(String proxyServerId) {
+    Set<PlayerInfo> set = playerInfoProxyServerMap.get(key(proxyServerId));
+    if (set == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(set);
+  }
+
+  List<PlayerInfo> copyInChildServer(String childServer) {
+    Set<PlayerInfo> set = playerInfoChildServerMap.get(key(childServer));
+    if (set == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(set);
+  }
+
+  /**
+   * Finds a proxy that has a player connected to the specified child server.
+   *
+   * @param childServer      the name of the child server
+   * @param preferredProxyId the proxy to return if it has a player there
+   * @param eligible         the test the other proxies have to pass
+   * @return Returns the id of the proxy, or null if no eligible proxy has players there
+   */
+  String findProxyInChildServer(
+      String childServer, String preferredProxyId, Predicate<String> eligible) {
+    Set<PlayerInfo> set = playerInfoChildServerMap.get(key(childServer));
+    if (set == null) {
+      return null;
+    }
+
+    String found = null;
+    for (PlayerInfo info : set) {
+      String proxyServer = info.getProxyServer();
+      if (preferredProxyId.equals(proxyServer)) {
+        return proxyServer;
+      }
+      if (found == null && proxyServer != null && eligible.test(proxyServer)) {
+        found = proxyServer;
+      }
+    }
+    return found;
+  }
+
+  List<String> proxyIds() {
+    List<String> proxyIds = new ArrayList<>();
+    playerInfoProxyServerMap.forEach(
+        (proxyId, players) -> {
+          if (!proxyId.equals(NONE) && !players.isEmpty()) {
+            proxyIds.add(proxyId);
+          }
+        });
+    return proxyIds;
+  }
+
+  private static String key(String serverName) {
+    return serverName == null ? NONE : serverName;
+  }
+
+  private static final class Membership {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile long version;
+
+    private void changed() {
+      version = VERSION_CLOCK.incrementAndGet();
+    }
+  }
+}
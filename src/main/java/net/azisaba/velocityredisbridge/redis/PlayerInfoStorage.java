@@ -0,0 +1,78 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * Persists the PlayerInfo of the players connected to this proxy so that other proxies can load
+ * them.
+ */
+public interface PlayerInfoStorage {
+
+  /**
+   * Stores the specified PlayerInfo only if the player is not registered yet.
+   *
+   * @param info the PlayerInfo to store
+   * @return Returns true if the player was not registered on any proxy
+   */
+  boolean register(PlayerInfo info);
+
+  /**
+   * Same as {@link #register(PlayerInfo)} for many players at once, in as few round trips as the
+   * storage allows.
+   *
+   * @param infos the PlayerInfo to store
+   * @return Returns whether each player was registered, in the order of the specified list
+   */
+  List<Boolean> registerAll(List<PlayerInfo> infos);
+
+  /**
+   * Stores the specified PlayerInfo, overwriting the existing one.
+   *
+   * @param info the PlayerInfo to store
+   */
+  void save(PlayerInfo info);
+
+  /**
+   * Deletes the record of the specified player that is connected to this proxy.
+   *
+   * @param uuid the UUID of the player to delete
+   */
+  void delete(UUID uuid);
+
+  /**
+   * Loads every stored PlayerInfo in the network.
+   *
+   * @param consumer receives each loaded PlayerInfo
+   * @return Returns the number of records that were read
+   */
+  int loadAll(Consumer<PlayerInfo> consumer);
+
+  /**
+   * Loads the stored PlayerInfo of the players connected to the specified proxy.
+   *
+   * @param proxyId the proxy id
+   * @return Returns the PlayerInfo of the players connected to the proxy
+   */
+  List<PlayerInfo> loadProxy(String proxyId);
+
+  /**
+   * Extends the expiration of the records of the specified players.
+   *
+   * @param uuids the UUIDs of the players connected to this proxy
+   * @return Returns the UUIDs whose records no longer exist and have to be registered again
+   */
+  List<UUID> refreshExpire(Collection<UUID> uuids);
+
+  /**
+   * Deletes every record of the specified proxy, which has stopped without unregistering its
+   * players.
+   *
+   * @param proxyId the id of the stopped proxy
+   * @param uuids   the UUIDs of the players that were connected to the proxy
+   */
+  void purgeProxy(String proxyId, Collection<UUID> uuids);
+}
@@ -0,0 +1,8 @@
+package net.azisaba.velocityredisbridge.redis;
+
+public enum PlayerInfoStorageLayout {
+  /** One string key with its own TTL per player. */
+  KEY,
+  /** One hash per proxy holding the players connected to it. */
+  HASH
+}
@@ -0,0 +1,263 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
+import com.velocitypowered.api.proxy.messages.LegacyChannelIdentifier;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import net.azisaba.velocityredisbridge.util.KeyedOrderedExecutor;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Delivers the messages of the BungeeCord Forward and ForwardToPlayer sub channels to child servers
+ * and players connected through other proxies. A message is published as binary only to the
+ * channel of the proxy that can reach its target. Only peers that advertise their own channels are
+ * asked, since older versions receive those messages but drop them.
+ *
+ * <p>A child server only receives plugin messages through a player connected to it. For {@code
+ * Forward ALL}, this proxy delivers to the servers it has players on and asks one other proxy for
+ * each remaining server, so every server receives the message once across the network.
+ */
+@RequiredArgsConstructor
+public class PluginMessageForwarder {
+
+  private static final byte TO_SERVERS = 0;
+  private static final byte TO_PLAYER = 1;
+
+  private final VelocityRedisBridge plugin;
+  private final MessagePublisher publisher;
+  private final KeyedOrderedExecutor ioExecutor;
+  private final String proxyId;
+  private final LegacyChannelIdentifier legacyChannel;
+  private final MinecraftChannelIdentifier modernChannel;
+
+  private final LongAdder remoteCount = new LongAdder();
+
+  /**
+   * Gets the channel on which the specified proxy receives forwarded messages.
+   *
+   * @param proxyId the id of the proxy
+   * @return Returns the channel of the proxy
+   */
+  public static String proxyChannel(String proxyId) {
+    return RedisKeys.FORWARD_PREFIX.getKey() + ":" + proxyId;
+  }
+
+  /**
+   * Sends the specified message to every child server in the network once.
+   *
+   * @param identifier the plugin message channel
+   * @param message    the channel, length and data expected by the servers
+   */
+  public void forwardToAll(ChannelIdentifier identifier, byte[] message) {
+    Map<String, List<String>> remoteServers = new HashMap<>();
+    for (RegisteredServer server : plugin.getProxy().getAllServers()) {
+      String serverName = server.getServerInfo().getName();
+      String owner = findProxyReaching(serverName);
+      if (owner == null || owner.equals(proxyId)) {
+        server.sendPluginMessage(identifier, message);
+      } else {
+        remoteServers.computeIfAbsent(owner, k -> new ArrayList<>()).add(serverName);
+      }
+    }
+
+    remoteServers.forEach(
+        (owner, serverNames) ->
+            publish(
+                owner,
+                encode(identifier, TO_SERVERS, serverNames, message),
+                () -> sendToServers(identifier, serverNames, message)));
+  }
+
+  /**
+   * Sends the specified message to the specified child server, through whichever proxy has a
+   * player connected to it.
+   *
+   * @param identifier the plugin message channel
+   * @param serverName the name of the child server
+   * @param message    the channel, length and data expected by the server
+   */
+  public void forwardToServer(ChannelIdentifier identifier, String serverName, byte[] message) {
+    List<String> serverNames = Collections.singletonList(serverName);
+    String owner = findProxyReaching(serverName);
+    if (owner == null || owner.equals(proxyId)) {
+      sendToServers(identifier, serverNames, message);
+      return;
+    }
+
+    publish(
+        owner,
+        encode(identifier, TO_SERVERS, serverNames, message),
+        () -> sendToServers(identifier, serverNames, message));
+  }
+
+  /**
+   * Sends the specified message to the child server the specified player is connected to, on
+   * whichever proxy the player is.
+   *
+   * @param identifier the plugin message channel
+   * @param playerName the name of the player
+   * @param message    the channel, length and data expected by the server
+   */
+  public void forwardToPlayer(ChannelIdentifier identifier, String playerName, byte[] message) {
+    if (plugin.getProxy().getPlayer(playerName).isPresent()) {
+      sendToPlayers(identifier, Collections.singletonList(playerName), message);
+      return;
+    }
+
+    PlayerInfo info = plugin.getPlayerInfoHandler().get(playerName);
+    if (info == null || info.getProxyServer() == null || info.getProxyServer().equals(proxyId)) {
+      return;
+    }
+    if (!plugin.getPeerCapabilities().receivesDirect(info.getProxyServer())) {
+      // an older version cannot deliver it either
+      return;
+    }
+    publish(
+        info.getProxyServer(),
+        encode(identifier, TO_PLAYER, Collections.singletonList(playerName), message),
+        null);
+  }
+
+  /**
+   * Delivers a message that another proxy published to the channel of this proxy.
+   *
+   * @param data the received message
+   */
+  public void received(byte[] data) {
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+    DataInputStream in = new DataInputStream(bytes);
+    byte type;
+    ChannelIdentifier identifier;
+    List<String> targets;
+    try {
+      type = in.readByte();
+      identifier = in.readBoolean() ? modernChannel : legacyChannel;
+      int count = in.readUnsignedShort();
+      targets = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        targets.add(in.readUTF());
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Malformed forward message", e);
+    }
+    // the rest is relayed as it is
+    byte[] message = bytes.readAllBytes();
+
+    if (type == TO_PLAYER) {
+      sendToPlayers(identifier, targets, message);
+    } else {
+      sendToServers(identifier, targets, message);
+    }
+  }
+
+  /**
+   * Gets the number of forwarded messages that were published to another proxy.
+   *
+   * @return Returns the number of remote deliveries
+   */
+  public long getRemoteCount() {
+    return remoteCount.sum();
+  }
+
+  private String findProxyReaching(String serverName) {
+    PeerCapabilities peerCapabilities = plugin.getPeerCapabilities();
+    return plugin
+        .getPlayerInfoHandler()
+        .findProxyReaching(serverName, peerCapabilities::receivesDirect);
+  }
+
+  private void sendToServers(ChannelIdentifier identifier, List<String> serverNames, byte[] data) {
+    for (String serverName : serverNames) {
+      plugin
+          .getProxy()
+          .getServer(serverName)
+          .ifPresent(server -> server.sendPluginMessage(identifier, data));
+    }
+  }
+
+  private void sendToPlayers(ChannelIdentifier identifier, List<String> playerNames, byte[] data) {
+    for (String playerName : playerNames) {
+      plugin
+          .getProxy()
+          .getPlayer(playerName)
+          .flatMap(Player::getCurrentServer)
+          .ifPresent(server -> server.sendPluginMessage(identifier, data));
+    }
+  }
+
+  /**
+   * Publishes the specified message to the specified proxy from the I/O executor, so that the
+   * plugin message handler never waits for redis. Messages to the same proxy stay in order.
+   *
+   * @param targetProxyId the proxy that can reach the target
+   * @param payload       the encoded message
+   * @param fallback      run if the publish failed or no proxy received the message, or null to
+   *                      drop it
+   */
+  private void publish(String targetProxyId, byte[] payload, Runnable fallback) {
+    remoteCount.increment();
+    byte[] channel = SafeEncoder.encode(proxyChannel(targetProxyId));
+    boolean queued =
+        ioExecutor.execute(
+            targetProxyId,
+            () -> {
+              try {
+                publisher
+                    .publish(channel, payload)
+                    .whenComplete(
+                        (receivers, throwable) ->
+                            published(targetProxyId, receivers, throwable, fallback));
+              } catch (RuntimeException e) {
+                published(targetProxyId, null, e, fallback);
+              }
+            });
+    if (!queued) {
+      plugin
+          .getLogger()
+          .fine("Dropped a message forwarded to " + targetProxyId + ", queue is full");
+    }
+  }
+
+  private void published(
+      String targetProxyId, Long receivers, Throwable throwable, Runnable fallback) {
+    if (throwable != null) {
+      plugin
+          .getLogger()
+          .warning("Failed to forward a message to " + targetProxyId + ": " + throwable);
+    } else if (receivers != 0) {
+      return;
+    }
+    // failed, or the proxy has stopped since the last heartbeat check
+    if (fallback != null) {
+      fallback.run();
+    }
+  }
+
+  private byte[] encode(
+      ChannelIdentifier identifier, byte type, List<String> targets, byte[] message) {
+    ByteArrayDataOutput out = ByteStreams.newDataOutput(message.length + 64);
+    out.writeByte(type);
+    out.writeBoolean(identifier.equals(modernChannel));
+    out.writeShort(targets.size());
+    for (String target : targets) {
+      out.writeUTF(target);
+    }
+    out.write(message);
+    return out.toByteArray();
+  }
+}
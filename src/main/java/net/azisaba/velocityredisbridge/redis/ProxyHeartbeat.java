@@ -0,0 +1,64 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+
+/**
+ * Keeps this proxy marked as running and drops the players of proxies that have stopped. A peer is
+ * only purged once it has been found stopped in consecutive checks, so that a pause slightly
+ * longer than the timeout does not wipe the players of a live proxy. A proxy that finds its own
+ * liveness expired registers its players again, in case a peer purged them anyway. Every check
+ * also refreshes which peers receive messages on their own channels.
+ */
+@RequiredArgsConstructor
+public class ProxyHeartbeat {
+
+  private static final int MISSED_CHECKS_BEFORE_PURGE = 2;
+
+  private final VelocityRedisBridge plugin;
+  private final ProxyRegistry registry;
+  private final String proxyId;
+
+  private final Map<String, Integer> missedChecks = new ConcurrentHashMap<>();
+
+  /** Refreshes the liveness of this proxy. */
+  public void beat() {
+    if (!registry.refresh(proxyId)) {
+      plugin
+          .getLogger()
+          .warning("The liveness of this proxy had expired, registering its players again");
+      plugin.getPlayerInfoHandler().updateAllRedisKeys();
+    }
+  }
+
+  /** Purges the players of every known proxy that has stopped refreshing its liveness. */
+  public void checkPeers() {
+    List<String> peers = new ArrayList<>();
+    for (String peer : plugin.getPlayerInfoHandler().getProxyIds()) {
+      if (!peer.equals(proxyId)) {
+        peers.add(peer);
+      }
+    }
+    if (peers.isEmpty()) {
+      missedChecks.clear();
+      plugin.getPeerCapabilities().update(peers);
+      return;
+    }
+
+    List<String> stopped = registry.findStopped(peers);
+    // only consecutive misses count
+    missedChecks.keySet().retainAll(stopped);
+    for (String peer : stopped) {
+      if (missedChecks.merge(peer, 1, Integer::sum) >= MISSED_CHECKS_BEFORE_PURGE) {
+        missedChecks.remove(peer);
+        plugin.getPlayerInfoHandler().purgeProxy(peer);
+        plugin.getRedisMessageSubscriber().deleteProxyChannels(peer);
+      }
+    }
+    plugin.getPeerCapabilities().update(registry.findDirectReceivers(peers));
+  }
+}
@@ -0,0 +1,44 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.List;
+
+/** Assigns the ids of the proxies and keeps track of which of them are still running. */
+public interface ProxyRegistry {
+
+  /**
+   * The value of the server id key of a proxy that receives messages on its own channels. Older
+   * versions store {@code using} there.
+   */
+  String DIRECT_CHANNELS_VALUE = "direct-channels";
+
+  /**
+   * Claims an id that no running proxy uses.
+   *
+   * @return Returns the claimed id
+   */
+  String claimProxyId();
+
+  /**
+   * Marks the specified proxy as running until the heartbeat timeout elapses.
+   *
+   * @param proxyId the id of the proxy
+   * @return Returns false if the timeout had already elapsed, so peers may have purged its players
+   */
+  boolean refresh(String proxyId);
+
+  /**
+   * Finds the proxies that have stopped refreshing their liveness.
+   *
+   * @param proxyIds the ids of the proxies to check
+   * @return Returns the ids of the stopped proxies
+   */
+  List<String> findStopped(List<String> proxyIds);
+
+  /**
+   * Finds the running proxies that receive messages on their own channels.
+   *
+   * @param proxyIds the ids of the proxies to check
+   * @return Returns the ids of the proxies that advertise {@link #DIRECT_CHANNELS_VALUE}
+   */
+  List<String> findDirectReceivers(List<String> proxyIds);
+}
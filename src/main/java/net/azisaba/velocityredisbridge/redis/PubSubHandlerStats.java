@@ -0,0 +1,28 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** Execution time of a function registered to {@link VRBPubSubHandler}. */
+@Getter
+@RequiredArgsConstructor
+public class PubSubHandlerStats {
+
+  private final String key;
+  /** The class name of the function, which contains the name of the class that created it. */
+  private final String handlerName;
+
+  private final long invocations;
+  private final long failures;
+  private final long totalNanos;
+  private final long maxNanos;
+
+  /**
+   * Gets the average execution time.
+   *
+   * @return Returns the average execution time in nanoseconds, or 0 if it has never run
+   */
+  public long getAverageNanos() {
+    return invocations == 0 ? 0 : totalNanos / invocations;
+  }
+}
@@ -11,6 +11,10 @@ public enum RedisKeys {
   PLAYERS_KEY_PREFIX("velocity-redis-bridge:player"),
   IP_KEY_PREFIX("velocity-redis-bridge:ip"),
   SERVER_ID_PREFIX("velocity-redis-bridge:server"),
+  PROXY_PLAYERS_PREFIX("velocity-redis-bridge:proxy-players"),
+  PLAYER_OWNER_KEY("velocity-redis-bridge:player-owner"),
+  PROXIES_KEY("velocity-redis-bridge:proxies"),
+  STREAM_PREFIX("velocity-redis-bridge:stream"),
 
   // Pub/Sub Keys
   SEND_SERVER_REQUEST("velocity-redis-bridge:send-request"),
@@ -20,7 +24,10 @@ public enum RedisKeys {
   SEND_RAW_MESSAGE_TO_PLAYER("velocity-redis-bridge:send-raw-message-to-player"),
   KICK_PLAYER("velocity-redis-bridge:kick-player"),
   INFO_UPDATE_NOTIFY("velocity-redis-bridge:info-update-notify"),
-  PUB_SUB_KEY("velocity-redis-bridge:pubsub");
+  PUB_SUB_KEY("velocity-redis-bridge:pubsub"),
+  PUB_SUB_REQUEST_KEY("velocity-redis-bridge:pubsub-request"),
+  PUB_SUB_REPLY_PREFIX("velocity-redis-bridge:pubsub-reply"),
+  FORWARD_PREFIX("velocity-redis-bridge:forward");
 
   @Getter private final String key;
 
@@ -1,127 +1,123 @@
 package net.azisaba.velocityredisbridge.redis;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-import com.velocitypowered.api.proxy.Player;
-import com.velocitypowered.api.proxy.server.RegisteredServer;
-import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import net.azisaba.velocityredisbridge.VelocityRedisBridge;
-import net.azisaba.velocityredisbridge.util.PlayerInfo;
-import net.azisaba.velocityredisbridge.util.PubSubMessageData;
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.SafeEncoder;
 
-@RequiredArgsConstructor
-public class RedisMessageSubscriber {
+/** Receives messages with SUBSCRIBE. Messages published while disconnected are lost. */
+public class RedisMessageSubscriber extends MessageSubscriber {
 
-  private final VelocityRedisBridge plugin;
-  private final JedisPool jedisPool;
-  private final Gson gson = new Gson();
+  /** Runs SUBSCRIBE on a connection until it is unsubscribed or the connection is lost. */
+  @FunctionalInterface
+  public interface Subscription {
 
-  @Getter private final ExecutorService executorService = Executors.newFixedThreadPool(1);
+    void subscribe(BinaryJedisPubSub pubSub, byte[][] channels);
+  }
 
-  public void subscribe() {
-    JedisPubSub subscriber =
-        new JedisPubSub() {
-          @Override
-          public void onPMessage(String pattern, String channel, String message) {
-            // Send request
-            if (channel.equals(RedisKeys.SEND_SERVER_REQUEST.toString())) {
-              String playerName = message.split(":")[0];
-              String serverName = message.split(":")[1];
+  private final Subscription subscription;
+  // channels SUBSCRIBE has been sent for on the current connection
+  private final Set<String> requested = ConcurrentHashMap.newKeySet();
+  // the connection is not thread-safe, and both plugin threads and the receiving thread write
+  private final Object writeLock = new Object();
 
-              Optional<Player> player = plugin.getProxy().getPlayer(playerName);
-              if (!player.isPresent()) {
-                return;
-              }
-              Optional<RegisteredServer> server = plugin.getProxy().getServer(serverName);
-              if (!server.isPresent()) {
-                return;
-              }
+  private final BinaryJedisPubSub subscriber =
+      new BinaryJedisPubSub() {
+        @Override
+        public void onSubscribe(byte[] channel, int subscribedChannels) {
+          connected();
+          // handlers registered while the first SUBSCRIBE was on its way saw no subscription yet
+          for (String registered : handlers.keySet()) {
+            subscribeOnce(registered);
+          }
+        }
 
-              player.get().createConnectionRequest(server.get()).connect();
-            } else if (channel.equals(RedisKeys.SEND_MESSAGE_TO_ALL.getKey())) {
-              plugin
-                  .getProxy()
-                  .getAllPlayers()
-                  .forEach(player -> player.sendMessage(Component.text(message)));
-            } else if (channel.equals(RedisKeys.SEND_MESSAGE_TO_PLAYER.getKey())) {
-              String playerName = message.split(":")[0];
-              String messageText = message.substring(playerName.length() + 1);
+        @Override
+        public void onMessage(byte[] channel, byte[] message) {
+          dispatch(SafeEncoder.encode(channel), message);
+        }
+      };
 
-              plugin
-                  .getProxy()
-                  .getPlayer(playerName)
-                  .ifPresent(player -> player.sendMessage(Component.text(messageText)));
-            } else if (channel.equals(RedisKeys.SEND_RAW_MESSAGE_TO_ALL.getKey())) {
-              plugin
-                  .getProxy()
-                  .getAllPlayers()
-                  .forEach(
-                      player ->
-                          player.sendMessage(GsonComponentSerializer.gson().deserialize(message)));
-            } else if (channel.equals(RedisKeys.SEND_RAW_MESSAGE_TO_PLAYER.getKey())) {
-              String playerName = message.split(":")[0];
-              String messageText = message.substring(playerName.length() + 1);
+  public RedisMessageSubscriber(
+      VelocityRedisBridge plugin,
+      JedisPool jedisPool,
+      int workerThreads,
+      int queueCapacity,
+      long reconnectInitialDelayMillis,
+      long reconnectMaxDelayMillis) {
+    this(
+        plugin,
+        (pubSub, channels) -> {
+          try (Jedis jedis = jedisPool.getResource()) {
+            jedis.subscribe(pubSub, channels);
+          }
+        },
+        workerThreads,
+        queueCapacity,
+        reconnectInitialDelayMillis,
+        reconnectMaxDelayMillis);
+  }
 
-              plugin
-                  .getProxy()
-                  .getPlayer(playerName)
-                  .ifPresent(
-                      player ->
-                          player.sendMessage(
-                              GsonComponentSerializer.gson().deserialize(messageText)));
-            } else if (channel.equals(RedisKeys.KICK_PLAYER.getKey())) {
-              String playerName = message.split(":")[0];
-              String reason = message.substring(playerName.length() + 1);
+  public RedisMessageSubscriber(
+      VelocityRedisBridge plugin,
+      Subscription subscription,
+      int workerThreads,
+      int queueCapacity,
+      long reconnectInitialDelayMillis,
+      long reconnectMaxDelayMillis) {
+    super(
+        plugin, workerThreads, queueCapacity, reconnectInitialDelayMillis, reconnectMaxDelayMillis);
+    this.subscription = subscription;
+  }
 
-              plugin
-                  .getProxy()
-                  .getPlayer(playerName)
-                  .ifPresent(player -> player.disconnect(Component.text(reason)));
-            } else if (channel.equals(RedisKeys.INFO_UPDATE_NOTIFY.getKey())) {
-              PlayerInfo info = gson.fromJson(message, PlayerInfo.class);
-              if (info != null) {
-                plugin.getPlayerInfoHandler().receivedUpdateNotify(info);
-              }
-            } else if (channel.equals(RedisKeys.PUB_SUB_KEY.getKey())) {
-              try {
-                plugin.getVrbPubSubHandler()
-                    .execute(gson.fromJson(message, PubSubMessageData.class));
-              } catch (JsonSyntaxException e) {
-                e.printStackTrace();
-              }
-            }
-          }
-        };
+  @Override
+  protected void receive() {
+    requested.clear();
+    requested.addAll(handlers.keySet());
+    byte[][] channels = requested.stream().map(SafeEncoder::encode).toArray(byte[][]::new);
+    // blocks until unsubscribed or the connection is lost
+    subscription.subscribe(subscriber, channels);
+  }
 
-    executorService.submit(
-        () -> {
-          try (Jedis jedis = jedisPool.getResource()) {
-            jedis.psubscribe(subscriber, RedisKeys.ALL_KEY_PREFIX + ":*");
-          }
-        });
+  @Override
+  protected void onChannelAdded(String channel) {
+    if (!subscriber.isSubscribed()) {
+      // subscribed by onSubscribe or on reconnect
+      return;
+    }
+    subscribeOnce(channel);
+  }
+
+  private void subscribeOnce(String channel) {
+    if (!requested.add(channel)) {
+      return;
+    }
 
-    for (int i = 0; i < 10000; i++) {
-      executorService.submit(
-          () -> {
-            try {
-              Thread.sleep(3000);
-            } catch (InterruptedException e) {
-              Thread.currentThread().interrupt();
-            }
+    try {
+      synchronized (writeLock) {
+        subscriber.subscribe(SafeEncoder.encode(channel));
+      }
+    } catch (JedisException e) {
+      // the connection was lost, the channel is subscribed on reconnect
+    }
+  }
+
+  @Override
+  protected void stopReceiving() {
+    if (!subscriber.isSubscribed()) {
+      return;
+    }
 
-            try (Jedis jedis = jedisPool.getResource()) {
-              jedis.psubscribe(subscriber, RedisKeys.ALL_KEY_PREFIX + ":*");
-            }
-          });
+    try {
+      synchronized (writeLock) {
+        subscriber.unsubscribe();
+      }
+    } catch (JedisException e) {
+      // the connection is already broken
     }
   }
 }
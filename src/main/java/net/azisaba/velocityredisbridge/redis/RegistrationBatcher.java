@@ -0,0 +1,139 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.util.PlayerInfo;
+
+/**
+ * Registers logging in players from a dedicated thread. Registrations requested while a batch is
+ * in flight are coalesced into the next batch, so that a login storm costs one pipelined round
+ * trip per batch instead of one per player.
+ *
+ * <p>When the queue is full, the returned future fails immediately instead of blocking the
+ * caller.
+ */
+public class RegistrationBatcher {
+
+  private final PlayerInfoHandler playerInfoHandler;
+  private final Logger logger;
+  private final int maxBatchSize;
+
+  private final BlockingQueue<PendingRegistration> queue;
+  private final Thread registrar;
+  private volatile boolean running = true;
+
+  public RegistrationBatcher(
+      PlayerInfoHandler playerInfoHandler, Logger logger, int maxBatchSize, int queueCapacity) {
+    this.playerInfoHandler = playerInfoHandler;
+    this.logger = logger;
+    this.maxBatchSize = maxBatchSize;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+    this.registrar = new Thread(this::runRegistrar, "VelocityRedisBridge Registrar");
+    this.registrar.setDaemon(true);
+    this.registrar.start();
+  }
+
+  /**
+   * Registers the specified player in the next batch.
+   *
+   * @param info the PlayerInfo of the player
+   * @return Returns a future completed with false if the player is already registered on any
+   *     proxy
+   */
+  public CompletableFuture<Boolean> register(PlayerInfo info) {
+    PendingRegistration pending = new PendingRegistration(info, new CompletableFuture<>());
+    if (!running) {
+      pending.future.completeExceptionally(new RejectedExecutionException("Registrar is closed"));
+    } else if (!queue.offer(pending)) {
+      pending.future.completeExceptionally(
+          new RejectedExecutionException("Registration queue is full"));
+    }
+    return pending.future;
+  }
+
+  /**
+   * Gets the number of registrations waiting for the next batch.
+   *
+   * @return Returns the number of queued registrations
+   */
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  /** Registers the players that are still queued and stops the thread. */
+  public void close() {
+    running = false;
+    registrar.interrupt();
+    try {
+      registrar.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    // queued by a login that passed the running check just before the registrar exited
+    List<PendingRegistration> leftover = new ArrayList<>();
+    queue.drainTo(leftover);
+    for (PendingRegistration pending : leftover) {
+      pending.future.completeExceptionally(new RejectedExecutionException("Registrar is closed"));
+    }
+  }
+
+  private void runRegistrar() {
+    List<PendingRegistration> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingRegistration first = running ? queue.take() : queue.poll();
+        if (first == null) {
+          break;
+        }
+        batch.add(first);
+      } catch (InterruptedException e) {
+        // close() was called, register what is left
+      }
+      queue.drainTo(batch, maxBatchSize - batch.size());
+
+      if (!batch.isEmpty()) {
+        registerBatch(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void registerBatch(List<PendingRegistration> batch) {
+    List<PlayerInfo> infos = new ArrayList<>(batch.size());
+    for (PendingRegistration pending : batch) {
+      infos.add(pending.info);
+    }
+
+    List<Boolean> results;
+    try {
+      results = playerInfoHandler.registerAll(infos);
+    } catch (Throwable e) {
+      // the thread must survive anything, or every later login would wait forever
+      logger.warning("Failed to register " + batch.size() + " player(s): " + e);
+      for (PendingRegistration pending : batch) {
+        pending.future.completeExceptionally(e);
+      }
+      return;
+    }
+
+    for (int i = 0; i < batch.size(); i++) {
+      batch.get(i).future.complete(results.get(i));
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static final class PendingRegistration {
+
+    private final PlayerInfo info;
+    private final CompletableFuture<Boolean> future;
+  }
+}
@@ -10,6 +10,7 @@ import redis.clients.jedis.JedisPool;
 public class ServerUniqueIdDefiner {
 
   private final JedisPool jedisPool;
+  private final long expireSeconds;
 
   @Getter private String uniqueId;
 
@@ -25,10 +26,12 @@ public class ServerUniqueIdDefiner {
       boolean success = false;
       while (!success) {
         id = RandomStringUtils.randomAlphanumeric(8);
-        success = jedis.setnx(RedisKeys.SERVER_ID_PREFIX + ":" + id, "using") != 0;
+        success =
+            jedis.setnx(RedisKeys.SERVER_ID_PREFIX + ":" + id, ProxyRegistry.DIRECT_CHANNELS_VALUE)
+                != 0;
       }
 
-      jedis.expire(RedisKeys.SERVER_ID_PREFIX + ":" + id, 600);
+      jedis.expire(RedisKeys.SERVER_ID_PREFIX + ":" + id, expireSeconds);
     } finally {
       jedis.close();
     }
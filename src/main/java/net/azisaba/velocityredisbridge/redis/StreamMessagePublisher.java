@@ -0,0 +1,81 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.metrics.LatencyRecorder;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Appends every message to the stream of its channel on the calling thread. Streams are trimmed
+ * to about {@code maxLength} entries. Messages are Base64 encoded since the binary stream commands
+ * of jedis return untyped replies.
+ *
+ * <p>The number of readers of a stream is unknown, so every publish reports one receiver and the
+ * fallbacks for messages nobody received never run. Messages to a single proxy only go to peers the
+ * heartbeat found running, and a peer that stops in between loses them.
+ */
+@RequiredArgsConstructor
+public class StreamMessagePublisher implements MessagePublisher {
+
+  static final String MESSAGE_FIELD = "m";
+
+  private final JedisPool jedisPool;
+  private final long maxLength;
+  private final LatencyRecorder publishLatency;
+
+  /**
+   * Gets the key of the stream that carries the messages of the specified channel.
+   *
+   * @param channel the name of the channel
+   * @return Returns the key of the stream
+   */
+  public static String streamKey(String channel) {
+    return RedisKeys.STREAM_PREFIX.getKey() + ":" + channel;
+  }
+
+  /**
+   * Appends the specified message to the stream of the specified channel.
+   *
+   * @param channel the channel to publish to
+   * @param message the message to publish
+   * @return Returns a future completed with 1, as the number of readers of a stream is unknown
+   */
+  @Override
+  public CompletableFuture<Long> publish(byte[] channel, byte[] message) {
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.xadd(streamKey(SafeEncoder.encode(channel)), params(), fields(message));
+    }
+    publishLatency.recordSince(start);
+    return CompletableFuture.completedFuture(1L);
+  }
+
+  @Override
+  public CompletableFuture<Void> publishAll(byte[] channel, List<byte[]> messages) {
+    String key = streamKey(SafeEncoder.encode(channel));
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (byte[] message : messages) {
+        pipeline.xadd(key, params(), fields(message));
+      }
+      pipeline.sync();
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private XAddParams params() {
+    return XAddParams.xAddParams().maxLen(maxLength).approximateTrimming();
+  }
+
+  private static Map<String, String> fields(byte[] message) {
+    return Collections.singletonMap(MESSAGE_FIELD, Base64.getEncoder().encodeToString(message));
+  }
+}
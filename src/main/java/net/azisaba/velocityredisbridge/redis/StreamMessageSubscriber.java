@@ -0,0 +1,123 @@
+package net.azisaba.velocityredisbridge.redis;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import net.azisaba.velocityredisbridge.VelocityRedisBridge;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.XReadParams;
+import redis.clients.jedis.resps.StreamEntry;
+
+/**
+ * Reads the streams of every handled channel with one XREAD, up to {@code readCount} entries per
+ * stream and call. After a reconnect, reading resumes from the last entry read, so messages
+ * appended in the meantime are not lost as long as the streams have not been trimmed past them.
+ *
+ * <p>Streams outlive their readers, so the streams of the channels of a proxy are deleted when it
+ * shuts down or its peers purge it.
+ */
+public class StreamMessageSubscriber extends MessageSubscriber {
+
+  // shorter than the socket timeout of the pool, and bounds the time close() waits
+  private static final int BLOCK_MILLIS = 1000;
+
+  private final JedisPool jedisPool;
+  private final int readCount;
+  // only accessed from the receiving thread
+  private final Map<String, StreamEntryID> lastIds = new HashMap<>();
+
+  public StreamMessageSubscriber(
+      VelocityRedisBridge plugin,
+      JedisPool jedisPool,
+      int workerThreads,
+      int queueCapacity,
+      long reconnectInitialDelayMillis,
+      long reconnectMaxDelayMillis,
+      int readCount) {
+    super(
+        plugin, workerThreads, queueCapacity, reconnectInitialDelayMillis, reconnectMaxDelayMillis);
+    this.jedisPool = jedisPool;
+    this.readCount = readCount;
+  }
+
+  @Override
+  protected void receive() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      receive(jedis);
+    }
+  }
+
+  private void receive(Jedis jedis) {
+    connected();
+
+    int prefixLength = StreamMessagePublisher.streamKey("").length();
+    XReadParams params = XReadParams.xReadParams().count(readCount).block(BLOCK_MILLIS);
+    while (running) {
+      Map<String, StreamEntryID> streams = new HashMap<>();
+      StreamEntryID now = null;
+      for (String channel : handlers.keySet()) {
+        StreamEntryID lastId = lastIds.get(channel);
+        if (lastId == null) {
+          // channels read for the first time start from the current time of the redis server
+          if (now == null) {
+            now = serverTime(jedis);
+          }
+          lastId = now;
+          lastIds.put(channel, lastId);
+        }
+        streams.put(StreamMessagePublisher.streamKey(channel), lastId);
+      }
+
+      List<Entry<String, List<StreamEntry>>> result = jedis.xread(params, streams);
+      if (result == null) {
+        continue;
+      }
+
+      for (Entry<String, List<StreamEntry>> stream : result) {
+        String channel = stream.getKey().substring(prefixLength);
+        for (StreamEntry entry : stream.getValue()) {
+          lastIds.put(channel, entry.getID());
+
+          String message = entry.getFields().get(StreamMessagePublisher.MESSAGE_FIELD);
+          if (message != null) {
+            dispatch(channel, Base64.getDecoder().decode(message));
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void deleteProxyChannels(String proxyId) {
+    // the channels of a proxy are the same for every proxy apart from the id at the end
+    String suffix = ":" + plugin.getProxyId();
+    List<String> keys = new ArrayList<>();
+    for (String channel : handlers.keySet()) {
+      if (channel.endsWith(suffix)) {
+        String prefix = channel.substring(0, channel.length() - suffix.length());
+        keys.add(StreamMessagePublisher.streamKey(prefix + ":" + proxyId));
+      }
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.del(keys.toArray(new String[0]));
+    } catch (JedisException e) {
+      plugin.getLogger().warning("Failed to delete the streams of proxy " + proxyId + ": " + e);
+    }
+  }
+
+  private static StreamEntryID serverTime(Jedis jedis) {
+    List<String> time = jedis.time();
+    long millis = Long.parseLong(time.get(0)) * 1000 + Long.parseLong(time.get(1)) / 1000;
+    return new StreamEntryID(millis, 0);
+  }
+}
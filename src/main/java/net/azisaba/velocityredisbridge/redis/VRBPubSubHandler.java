@@ -3,23 +3,64 @@ package net.azisaba.velocityredisbridge.redis;
 import com.google.gson.Gson;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
 import lombok.RequiredArgsConstructor;
+import net.azisaba.velocityredisbridge.util.KeyedOrderedExecutor;
 import net.azisaba.velocityredisbridge.util.PubSubMessageData;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
+/**
+ * Publishes messages to the functions registered by plugins on every proxy. The functions of a
+ * channel run in the order the messages were received, and the channels run in parallel on the
+ * specified executor, so a slow function only delays its own channel.
+ *
+ * <p>Requests are published to a channel of their own, which older versions do not handle, so they
+ * never reach the functions of those proxies as plain messages. They are answered by the responder
+ * registered to their channel. Replies are published to the reply channel of the requesting proxy
+ * only and matched to the request by correlation id.
+ */
 @RequiredArgsConstructor
 public class VRBPubSubHandler {
 
-  private final JedisPool jedisPool;
+  private static final long SLOW_HANDLER_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final MessagePublisher publisher;
+  private final Logger logger;
+  private final KeyedOrderedExecutor executor;
   private final String velocityId;
 
   private final Gson gson = new Gson();
-  private final HashMap<String, List<Consumer<String>>> registeredFunctionList = new HashMap<>();
+  private final ConcurrentHashMap<String, List<Registration>> registeredFunctionList =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Function<String, String>> responders =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, PendingRequest> pendingRequests =
+      new ConcurrentHashMap<>();
+  private final AtomicLong lastCorrelationId = new AtomicLong();
+
+  /**
+   * Gets the channel on which the specified proxy receives the replies to its requests.
+   *
+   * @param velocityId the id of the proxy
+   * @return Returns the reply channel of the proxy
+   */
+  public static String replyChannel(String velocityId) {
+    return RedisKeys.PUB_SUB_REPLY_PREFIX.getKey() + ":" + velocityId;
+  }
 
   /**
    * Registers the specified function to the specified channel.
@@ -28,7 +69,33 @@ public class VRBPubSubHandler {
    * @param consumer the function to register
    */
   public void register(String key, Consumer<String> consumer) {
-    registeredFunctionList.computeIfAbsent(key, k -> new ArrayList<>()).add(consumer);
+    registeredFunctionList.compute(
+        key,
+        (k, registrations) -> {
+          if (registrations == null) {
+            registrations = new CopyOnWriteArrayList<>();
+          }
+          registrations.add(new Registration(k, consumer));
+          return registrations;
+        });
+  }
+
+  /**
+   * Unregisters the specified function from the specified channel.
+   *
+   * @param key      the channel to unregister from
+   * @param consumer the function registered with {@link #register(String, Consumer)}
+   * @return Returns true if the function was registered
+   */
+  public boolean unregister(String key, Consumer<String> consumer) {
+    boolean[] removed = new boolean[1];
+    registeredFunctionList.computeIfPresent(
+        key,
+        (k, registrations) -> {
+          removed[0] = registrations.removeIf(registration -> registration.consumer == consumer);
+          return registrations.isEmpty() ? null : registrations;
+        });
+    return removed[0];
   }
 
   /**
@@ -43,10 +110,44 @@ public class VRBPubSubHandler {
   /**
    * Gets the registered function list.
    *
-   * @return Returns the registered function list
+   * @return Returns a snapshot of the registered function list
    */
   public List<Consumer<String>> getRegisteredFunctionList(String key) {
-    return registeredFunctionList.getOrDefault(key, Collections.emptyList());
+    List<Registration> registrations = registeredFunctionList.get(key);
+    if (registrations == null) {
+      return Collections.emptyList();
+    }
+
+    List<Consumer<String>> consumers = new ArrayList<>(registrations.size());
+    for (Registration registration : registrations) {
+      consumers.add(registration.consumer);
+    }
+    return consumers;
+  }
+
+  /**
+   * Gets the execution time of every registered function.
+   *
+   * @return Returns the statistics of every registered function
+   */
+  public List<PubSubHandlerStats> getHandlerStats() {
+    List<PubSubHandlerStats> stats = new ArrayList<>();
+    for (List<Registration> registrations : registeredFunctionList.values()) {
+      for (Registration registration : registrations) {
+        stats.add(registration.snapshot());
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Gets the number of received messages that were dropped because their channel had too many
+   * messages waiting.
+   *
+   * @return Returns the number of dropped messages
+   */
+  public long getDroppedCount() {
+    return executor.getRejectedCount();
   }
 
   /**
@@ -57,16 +158,33 @@ public class VRBPubSubHandler {
    * @param ignoreSelf if true, the message will be ignored in the proxy instance that calls this
    */
   public void publish(String key, String message, boolean ignoreSelf) {
+    publishAsync(key, message, ignoreSelf)
+        .whenComplete(
+            (receivers, throwable) -> {
+              if (throwable == null) {
+                return;
+              }
+              Throwable cause =
+                  throwable instanceof CompletionException ? throwable.getCause() : throwable;
+              logger.warning("Failed to publish a pub/sub message on " + key + ": " + cause);
+            });
+  }
+
+  /**
+   * Publishes the specified message to the specified channel.
+   *
+   * @param key        the channel to publish to
+   * @param message    the message to publish
+   * @param ignoreSelf if true, the message will be ignored in the proxy instance that calls this
+   * @return Returns a future completed when the message has been published to redis
+   */
+  public CompletableFuture<Long> publishAsync(String key, String message, boolean ignoreSelf) {
     PubSubMessageData data = new PubSubMessageData(key, message, velocityId);
     if (!ignoreSelf) {
       data.setPublisherVelocityId(null);
     }
 
-    String jsonData = gson.toJson(data);
-
-    try (Jedis jedis = jedisPool.getResource()) {
-      jedis.publish(RedisKeys.PUB_SUB_KEY.getKey(), jsonData);
-    }
+    return publisher.publish(RedisKeys.PUB_SUB_KEY.getKey(), gson.toJson(data));
   }
 
   /**
@@ -79,6 +197,111 @@ public class VRBPubSubHandler {
     publish(key, message, false);
   }
 
+  /**
+   * Publishes the specified message to the specified channel.
+   *
+   * @param key     the channel to publish to
+   * @param message the message to publish
+   * @return Returns a future completed when the message has been published to redis
+   */
+  public CompletableFuture<Long> publishAsync(String key, String message) {
+    return publishAsync(key, message, false);
+  }
+
+  /**
+   * Registers the function that answers the requests sent to the specified channel on this proxy.
+   * Replaces the responder registered before, if any.
+   *
+   * @param key       the channel to answer
+   * @param responder the function returning the reply to a request, or null not to reply
+   */
+  public void registerResponder(String key, Function<String, String> responder) {
+    responders.put(key, responder);
+  }
+
+  /**
+   * Unregisters the responder of the specified channel.
+   *
+   * @param key the channel
+   */
+  public void unregisterResponder(String key) {
+    responders.remove(key);
+  }
+
+  /**
+   * Sends a request to every proxy, including this one, and completes with the first reply.
+   *
+   * @param key     the channel to send the request to
+   * @param payload the request
+   * @param timeout the maximum time to wait for a reply
+   * @param unit    the unit of the timeout
+   * @return Returns a future completed with the reply, or failed with a {@link TimeoutException}
+   */
+  public CompletableFuture<String> request(
+      String key, String payload, long timeout, TimeUnit unit) {
+    return scatterGather(key, payload, 1, timeout, unit)
+        .thenApply(
+            replies -> {
+              if (replies.isEmpty()) {
+                throw new CompletionException(
+                    new TimeoutException("No reply to the request on " + key));
+              }
+              return replies.values().iterator().next();
+            });
+  }
+
+  /**
+   * Sends a request to every proxy, including this one, and collects the replies until the
+   * specified number has arrived or the timeout elapses.
+   *
+   * @param key               the channel to send the request to
+   * @param payload           the request
+   * @param expectedResponses the number of replies to wait for
+   * @param timeout           the maximum time to wait for the replies
+   * @param unit              the unit of the timeout
+   * @return Returns a future completed with the replies by proxy id, in the order they arrived.
+   *     Completes with the replies received so far when the timeout elapses
+   */
+  public CompletableFuture<Map<String, String>> scatterGather(
+      String key, String payload, int expectedResponses, long timeout, TimeUnit unit) {
+    String correlationId = Long.toString(lastCorrelationId.incrementAndGet());
+    PendingRequest pending = new PendingRequest(expectedResponses);
+    pendingRequests.put(correlationId, pending);
+
+    CompletableFuture.delayedExecutor(timeout, unit)
+        .execute(() -> complete(correlationId, pending));
+
+    PubSubMessageData data = new PubSubMessageData(key, payload, velocityId, correlationId);
+    CompletableFuture<Long> published;
+    try {
+      published = publisher.publish(RedisKeys.PUB_SUB_REQUEST_KEY.getKey(), gson.toJson(data));
+    } catch (RuntimeException e) {
+      published = CompletableFuture.failedFuture(e);
+    }
+    published.whenComplete(
+        (receivers, e) -> {
+          if (e != null) {
+            pendingRequests.remove(correlationId);
+            pending.future.completeExceptionally(e);
+          }
+        });
+    return pending.future;
+  }
+
+  /**
+   * Gets the number of requests waiting for replies.
+   *
+   * @return Returns the number of pending requests
+   */
+  public int getPendingRequestCount() {
+    return pendingRequests.size();
+  }
+
+  /** Stops accepting messages and waits for the queued ones to be handled. */
+  public void close() {
+    executor.shutdown(5, TimeUnit.SECONDS);
+  }
+
   protected void execute(PubSubMessageData data) {
     if (!registeredFunctionList.containsKey(data.getKey())) {
       return;
@@ -87,12 +310,123 @@ public class VRBPubSubHandler {
       return;
     }
 
-    registeredFunctionList.get(data.getKey()).forEach(consumer -> {
+    if (!executor.execute(data.getKey(), () -> run(data))) {
+      logger.fine("Dropped a pub/sub message on " + data.getKey() + ", queue is full");
+    }
+  }
+
+  protected void receivedReply(PubSubMessageData data) {
+    PendingRequest pending = pendingRequests.get(data.getCorrelationId());
+    if (pending == null) {
+      // the request has timed out
+      return;
+    }
+
+    boolean done;
+    synchronized (pending) {
+      pending.replies.put(data.getPublisherVelocityId(), data.getMessage());
+      done = pending.replies.size() >= pending.expectedResponses;
+    }
+    if (done) {
+      complete(data.getCorrelationId(), pending);
+    }
+  }
+
+  protected void executeRequest(PubSubMessageData request) {
+    Function<String, String> responder = responders.get(request.getKey());
+    if (responder == null || request.getPublisherVelocityId() == null) {
+      return;
+    }
+
+    Runnable task =
+        () -> {
+          String reply;
+          try {
+            reply = responder.apply(request.getMessage());
+          } catch (Exception e) {
+            e.printStackTrace();
+            return;
+          }
+          if (reply == null) {
+            return;
+          }
+
+          PubSubMessageData data =
+              new PubSubMessageData(
+                  request.getKey(), reply, velocityId, request.getCorrelationId());
+          publisher.publish(replyChannel(request.getPublisherVelocityId()), gson.toJson(data));
+        };
+    if (!executor.execute(request.getKey(), task)) {
+      logger.fine("Dropped a request on " + request.getKey() + ", queue is full");
+    }
+  }
+
+  private void complete(String correlationId, PendingRequest pending) {
+    pendingRequests.remove(correlationId, pending);
+    synchronized (pending) {
+      pending.future.complete(new LinkedHashMap<>(pending.replies));
+    }
+  }
+
+  private void run(PubSubMessageData data) {
+    // looked up again, functions may have been unregistered while the message was queued
+    List<Registration> registrations = registeredFunctionList.get(data.getKey());
+    if (registrations == null) {
+      return;
+    }
+
+    for (Registration registration : registrations) {
+      long start = System.nanoTime();
       try {
-        consumer.accept(data.getMessage());
+        registration.consumer.accept(data.getMessage());
       } catch (Exception e) {
+        registration.failures.increment();
         e.printStackTrace();
       }
-    });
+
+      long elapsed = System.nanoTime() - start;
+      registration.record(elapsed);
+      if (elapsed > SLOW_HANDLER_NANOS) {
+        logger.warning(
+            "Pub/sub handler " + registration.consumer.getClass().getName() + " on "
+                + data.getKey() + " took " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+      }
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static final class PendingRequest {
+
+    private final int expectedResponses;
+    private final Map<String, String> replies = new LinkedHashMap<>();
+    private final CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+  }
+
+  @RequiredArgsConstructor
+  private static final class Registration {
+
+    private final String key;
+    private final Consumer<String> consumer;
+
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private void record(long elapsedNanos) {
+      invocations.increment();
+      totalNanos.add(elapsedNanos);
+      maxNanos.accumulate(elapsedNanos);
+    }
+
+    private PubSubHandlerStats snapshot() {
+      return new PubSubHandlerStats(
+          key,
+          consumer.getClass().getName(),
+          invocations.sum(),
+          failures.sum(),
+          totalNanos.sum(),
+          maxNanos.get());
+    }
   }
 }
@@ -0,0 +1,107 @@
+package net.azisaba.velocityredisbridge.util;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks on a fixed number of single-threaded lanes. Tasks submitted with equal keys always run
+ * on the same lane, in submission order, while tasks with different keys may run in parallel.
+ *
+ * <p>Each lane has a bounded queue. Submitting to a full lane never blocks; the task is rejected
+ * and counted instead.
+ */
+public class KeyedOrderedExecutor {
+
+  private final ThreadPoolExecutor[] lanes;
+  private final LongAdder rejectedCount = new LongAdder();
+
+  /**
+   * Creates the lanes and starts their threads.
+   *
+   * @param name          the prefix of the names of the threads
+   * @param laneCount     the number of lanes
+   * @param queueCapacity the number of tasks each lane may hold before rejecting new ones
+   */
+  public KeyedOrderedExecutor(String name, int laneCount, int queueCapacity) {
+    lanes = new ThreadPoolExecutor[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      String threadName = name + " #" + i;
+      lanes[i] =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              0,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(queueCapacity),
+              runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+  }
+
+  /**
+   * Submits the specified task to the lane of the specified key.
+   *
+   * @param key  the key whose tasks must run in order
+   * @param task the task
+   * @return Returns false if the lane is full or has been shut down
+   */
+  public boolean execute(Object key, Runnable task) {
+    ThreadPoolExecutor lane = lanes[Math.floorMod(key.hashCode(), lanes.length)];
+    try {
+      lane.execute(task);
+      return true;
+    } catch (RejectedExecutionException e) {
+      rejectedCount.increment();
+      return false;
+    }
+  }
+
+  /**
+   * Gets the number of tasks waiting in every lane.
+   *
+   * @return Returns the number of queued tasks
+   */
+  public int getQueueSize() {
+    int size = 0;
+    for (ThreadPoolExecutor lane : lanes) {
+      size += lane.getQueue().size();
+    }
+    return size;
+  }
+
+  /**
+   * Gets the number of tasks that were rejected because their lane was full.
+   *
+   * @return Returns the number of rejected tasks
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  /**
+   * Stops accepting tasks and waits for the queued ones to finish.
+   *
+   * @param timeout the maximum time to wait for each lane
+   * @param unit    the unit of the timeout
+   */
+  public void shutdown(long timeout, TimeUnit unit) {
+    for (ThreadPoolExecutor lane : lanes) {
+      lane.shutdown();
+    }
+    try {
+      for (ThreadPoolExecutor lane : lanes) {
+        if (!lane.awaitTermination(timeout, unit)) {
+          lane.shutdownNow();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -10,5 +10,10 @@ public class PubSubMessageData {
   private String key;
   private String message;
   private String publisherVelocityId;
+  // set on requests and their replies only
+  private String correlationId;
 
+  public PubSubMessageData(String key, String message, String publisherVelocityId) {
+    this(key, message, publisherVelocityId, null);
+  }
 }